@@ -0,0 +1,69 @@
+package com.example.smartspendapp.config;
+
+import com.example.smartspendapp.service.ApiTokenService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Authenticates /api/** requests that carry "Authorization: Bearer &lt;access token&gt;" when
+ * app.api-auth.mode=token. The token is checked by signature and expiry only (no users query),
+ * and the authentication lives in the request's SecurityContext only, never in a session.
+ *
+ * Requests without a Bearer header pass through untouched, so session cookies keep working for
+ * the Thymeleaf pages and for API clients that still use them. A bad or expired token is a 401
+ * straight away; the client should refresh it.
+ */
+public class ApiTokenAuthenticationFilter extends OncePerRequestFilter {
+
+    private static final String BEARER = "Bearer ";
+
+    private final ApiTokenService tokenService;
+
+    public ApiTokenAuthenticationFilter(ApiTokenService tokenService) {
+        this.tokenService = tokenService;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!tokenService.isEnabled()) return true;
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return !path.startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header == null || !header.regionMatches(true, 0, BEARER, 0, BEARER.length())) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        Optional<AppUserPrincipal> principal = tokenService.verifyAccess(header.substring(BEARER.length()).trim());
+        if (principal.isEmpty()) {
+            response.setHeader(HttpHeaders.WWW_AUTHENTICATE, "Bearer error=\"invalid_token\"");
+            response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+            return;
+        }
+
+        AppUserPrincipal p = principal.get();
+        SecurityContext context = SecurityContextHolder.createEmptyContext();
+        context.setAuthentication(UsernamePasswordAuthenticationToken.authenticated(p, null, p.getAuthorities()));
+        SecurityContextHolder.setContext(context);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.smartspendapp.config;
+
+import com.example.smartspendapp.model.User;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * The principal of a form-login or remember-me session. Besides the Spring Security user
+ * (username = email) it carries the user's id and display name, so request handlers can query
+ * by id without loading the users row first.
+ *
+ * Other principals still occur (dev login, /dev/fix/mock-login, sessions created before this
+ * class existed); {@link #userId(Object, Function)} falls back to an email lookup for those.
+ */
+public class AppUserPrincipal extends org.springframework.security.core.userdetails.User {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Long userId;
+    private final String displayName;
+
+    public AppUserPrincipal(Long userId, String displayName, String email, String password, boolean enabled,
+                            Collection<? extends GrantedAuthority> authorities) {
+        super(email, password, enabled, true, true, true, authorities);
+        this.userId = userId;
+        this.displayName = displayName;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    /**
+     * The username if set, otherwise the email.
+     */
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * A new instance with the same values (used by the login user cache, which must not hand out
+     * the object whose password the ProviderManager erases).
+     */
+    public AppUserPrincipal copy() {
+        return withPassword(getPassword());
+    }
+
+    /**
+     * The same principal with another password hash (after a hash upgrade on login).
+     */
+    public AppUserPrincipal withPassword(String password) {
+        return new AppUserPrincipal(userId, displayName, getUsername(), password, isEnabled(), getAuthorities());
+    }
+
+    /**
+     * The AppUserPrincipal behind {@code principal}, which may also be the Authentication holding it.
+     */
+    public static Optional<AppUserPrincipal> of(Object principal) {
+        if (principal instanceof Authentication auth) {
+            principal = auth.getPrincipal();
+        }
+        return principal instanceof AppUserPrincipal p ? Optional.of(p) : Optional.empty();
+    }
+
+    /**
+     * Id of the authenticated user: read from an AppUserPrincipal, otherwise resolved through
+     * {@code findByEmail} (e.g. {@code userRepository::findByEmail}) with the principal's name.
+     */
+    public static Optional<Long> userId(Object principal, Function<String, Optional<User>> findByEmail) {
+        Optional<AppUserPrincipal> app = of(principal);
+        if (app.isPresent()) {
+            return Optional.ofNullable(app.get().getUserId());
+        }
+        String email = emailOf(principal);
+        return email == null ? Optional.empty() : findByEmail.apply(email).map(User::getId);
+    }
+
+    private static String emailOf(Object principal) {
+        if (principal instanceof UserDetails ud) return ud.getUsername();
+        if (principal instanceof Authentication auth) return auth.getName();
+        if (principal instanceof String s) return s;
+        return null;
+    }
+}
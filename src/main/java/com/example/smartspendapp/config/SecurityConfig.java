@@ -2,6 +2,10 @@ package com.example.smartspendapp.config;
 
 import com.example.smartspendapp.model.User;
 import com.example.smartspendapp.repository.UserRepository;
+import com.example.smartspendapp.service.ApiTokenService;
+import com.example.smartspendapp.service.BoundedPasswordEncoder;
+import com.example.smartspendapp.service.PasswordHashingBusyException;
+import com.example.smartspendapp.service.TtlUserCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.ObjectProvider;
@@ -12,6 +16,7 @@ import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.CachingUserDetailsService;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.Customizer;
@@ -22,9 +27,16 @@ import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.*;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.HttpStatusEntryPoint;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.savedrequest.HttpSessionRequestCache;
+import org.springframework.security.web.servlet.util.matcher.PathPatternRequestMatcher;
+import org.springframework.security.web.util.matcher.AndRequestMatcher;
+import org.springframework.security.web.util.matcher.NegatedRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestHeaderRequestMatcher;
 import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
 import org.springframework.web.cors.*;
 import org.springframework.core.env.Environment;
@@ -34,10 +46,11 @@ import java.util.stream.Collectors;
 
 /**
  * Security configuration:
- *  - Loads users by email (username = email).
- *  - BCrypt password checks.
+ *  - Loads users by email (username = email) into an AppUserPrincipal that also carries the user id.
+ *  - BCrypt password checks on a bounded hashing pool; outdated hashes are upgraded on login.
  *  - Form login posts to /login and expects form fields email & password.
  *  - CSRF enabled for pages, ignored for /api/** and /dev/** (dev-only).
+ *  - With app.api-auth.mode=token, /api/** also accepts stateless Bearer tokens (ApiTokenAuthenticationFilter).
  *  - Permit static resources and the common public pages (/login, /register, /dev/**).
  *
  * Dev-mode: to accept any credentials for local testing set property:
@@ -89,35 +102,64 @@ public class SecurityConfig {
                     ).orElse(Collections.emptyList());
 
             boolean enabled = user.getEnabled() != null && user.getEnabled();
+            String displayName = user.getUsername() == null ? user.getEmail() : user.getUsername();
 
-            return org.springframework.security.core.userdetails.User.builder()
-                    .username(user.getEmail())
-                    .password(user.getPassword())
-                    .disabled(!enabled)
-                    .accountExpired(false)
-                    .accountLocked(false)
-                    .credentialsExpired(false)
-                    .authorities(authorities)
-                    .build();
+            // carries the id, so controllers do not need to look the user up again per request
+            return new AppUserPrincipal(user.getId(), displayName, user.getEmail(), user.getPassword(),
+                    enabled, authorities);
         };
     }
 
     /**
-     * BCrypt password encoder
+     * Password encoder: new hashes are "{bcrypt}" + BCrypt at app.security.password.strength;
+     * hashes without an {id} prefix (stored before this) are checked as plain BCrypt. Hashing runs
+     * on a bounded pool (see {@link BoundedPasswordEncoder}), never on the request thread.
      */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder(10);
+    public PasswordEncoder passwordEncoder(@Value("${app.security.password.strength:10}") int strength,
+                                           @Value("${app.security.password.hash-threads:0}") int hashThreads,
+                                           @Value("${app.security.password.queue-size:64}") int queueSize,
+                                           @Value("${app.security.password.wait-ms:3000}") long waitMs) {
+        Map<String, PasswordEncoder> encoders = new HashMap<>();
+        encoders.put("bcrypt", new BCryptPasswordEncoder(strength));
+        DelegatingPasswordEncoder delegating = new DelegatingPasswordEncoder("bcrypt", encoders);
+        delegating.setDefaultPasswordEncoderForMatches(new BCryptPasswordEncoder());
+
+        int threads = hashThreads > 0 ? hashThreads : Runtime.getRuntime().availableProcessors();
+        return new BoundedPasswordEncoder(delegating, threads, queueSize, waitMs);
     }
 
     /**
-     * DaoAuthenticationProvider wired to the UserDetailsService and BCrypt encoder.
+     * Stores a re-encoded password after a successful login whose stored hash is outdated (legacy
+     * unprefixed hash, or a lower strength than configured), so hashes are upgraded as users sign in.
      */
     @Bean
-    public DaoAuthenticationProvider daoAuthenticationProvider(UserDetailsService uds, PasswordEncoder encoder) {
+    public UserDetailsPasswordService userDetailsPasswordService(TtlUserCache userCache) {
+        return (user, newPassword) -> {
+            userRepository.updatePasswordByEmail(user.getUsername(), newPassword);
+            userCache.evict(user.getUsername());
+            log.debug("Upgraded password hash for {}", user.getUsername());
+            if (user instanceof AppUserPrincipal p) {
+                return p.withPassword(newPassword);
+            }
+            return org.springframework.security.core.userdetails.User.withUserDetails(user).password(newPassword).build();
+        };
+    }
+
+    /**
+     * DaoAuthenticationProvider wired to the UserDetailsService and password encoder.
+     * Loaded users are kept in the short-TTL user cache; on a password mismatch against a cached
+     * entry the provider reloads the user once before failing.
+     */
+    @Bean
+    public DaoAuthenticationProvider daoAuthenticationProvider(UserDetailsService uds, PasswordEncoder encoder,
+                                                               TtlUserCache userCache,
+                                                               UserDetailsPasswordService passwordService) {
         DaoAuthenticationProvider provider = new DaoAuthenticationProvider();
         provider.setUserDetailsService(uds);
         provider.setPasswordEncoder(encoder);
+        provider.setUserCache(userCache);
+        provider.setUserDetailsPasswordService(passwordService);
         return provider;
     }
 
@@ -184,11 +226,19 @@ public class SecurityConfig {
     @Bean
     public SecurityFilterChain filterChain(HttpSecurity http,
                                            UserDetailsService uds,
+                                           TtlUserCache userCache,
+                                           DaoAuthenticationProvider daoAuthenticationProvider,
+                                           ApiTokenService apiTokenService,
                                            ObjectProvider<AuthenticationProvider> devAuthProviderObject) throws Exception {
 
+        // remember-me cookies are checked against the same cache as form logins
+        CachingUserDetailsService rememberMeUds = new CachingUserDetailsService(uds);
+        rememberMeUds.setUserCache(userCache);
+
         http
             .cors(Customizer.withDefaults())
             .csrf(csrf -> csrf.ignoringRequestMatchers("/api/**", "/dev/**"))
+            .addFilterBefore(new ApiTokenAuthenticationFilter(apiTokenService), UsernamePasswordAuthenticationFilter.class)
             .exceptionHandling(ex -> ex
                     .defaultAuthenticationEntryPointFor(
                             new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED),
@@ -218,6 +268,8 @@ public class SecurityConfig {
                             reason = "locked";
                         } else if (exception instanceof org.springframework.security.authentication.BadCredentialsException) {
                             reason = "invalid";
+                        } else if (exception instanceof PasswordHashingBusyException) {
+                            reason = "busy";
                         }
                         response.sendRedirect("/login?result=" + reason);
                     })
@@ -233,7 +285,7 @@ public class SecurityConfig {
             .rememberMe(remember -> remember
                     .key("smartspend-remember-me-key")
                     .tokenValiditySeconds(7 * 24 * 60 * 60)
-                    .userDetailsService(uds)
+                    .userDetailsService(rememberMeUds)
             );
 
         // If the property security.dev-login.enabled is true, register the dev provider first.
@@ -246,8 +298,21 @@ public class SecurityConfig {
             log.debug("Dev-login disabled. Using DAO provider for authentication.");
         }
 
+        if (apiTokenService.isEnabled()) {
+            // token clients never log in through a page, so an unauthenticated API call (401) must not
+            // create a session just to remember its URL; page GETs (non-XHR, as by default) are still saved
+            HttpSessionRequestCache requestCache = new HttpSessionRequestCache();
+            requestCache.setRequestMatcher(new AndRequestMatcher(
+                    PathPatternRequestMatcher.withDefaults().matcher(HttpMethod.GET, "/**"),
+                    new NegatedRequestMatcher(PathPatternRequestMatcher.withDefaults().matcher("/api/**")),
+                    new NegatedRequestMatcher(new RequestHeaderRequestMatcher("X-Requested-With", "XMLHttpRequest"))
+            ));
+            http = http.requestCache(cache -> cache.requestCache(requestCache));
+            log.info("API auth mode: token (stateless Bearer tokens on /api/**)");
+        }
+
         // Always register DAO provider so production auth works
-        http = http.authenticationProvider(daoAuthenticationProvider(uds, passwordEncoder()));
+        http = http.authenticationProvider(daoAuthenticationProvider);
 
         return http.build();
     }
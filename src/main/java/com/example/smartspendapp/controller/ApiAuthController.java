@@ -6,7 +6,12 @@ import com.example.smartspendapp.model.VerificationToken;
 import com.example.smartspendapp.repository.RoleRepository;
 import com.example.smartspendapp.repository.UserRepository;
 import com.example.smartspendapp.repository.VerificationTokenRepository;
+import com.example.smartspendapp.service.ApiTokenService;
+import com.example.smartspendapp.service.ClientIpResolver;
+import com.example.smartspendapp.service.EmailSendLimiter;
 import com.example.smartspendapp.service.EmailService;
+import com.example.smartspendapp.service.PasswordHashingBusyException;
+import com.example.smartspendapp.service.TtlUserCache;
 
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpSession;
@@ -29,6 +34,8 @@ import java.util.*;
 /**
  * ✅ OTP-based Authentication Controller (no JWT)
  * Handles registration, resend OTP, verify OTP, and login.
+ * Login creates an HTTP session, or with app.api-auth.mode=token returns signed access/refresh
+ * tokens instead (see ApiTokenService); /refresh exchanges a refresh token for a new pair.
  */
 @RestController
 @RequestMapping("/api/auth")
@@ -42,19 +49,31 @@ public class ApiAuthController {
     private final PasswordEncoder passwordEncoder;
     private final AuthenticationManager authenticationManager;
     private final EmailService emailService;
+    private final EmailSendLimiter sendLimiter;
+    private final ClientIpResolver clientIp;
+    private final TtlUserCache userCache;
+    private final ApiTokenService tokenService;
 
     public ApiAuthController(UserRepository userRepository,
                              RoleRepository roleRepository,
                              VerificationTokenRepository verificationTokenRepository,
                              PasswordEncoder passwordEncoder,
                              AuthenticationManager authenticationManager,
-                             EmailService emailService) {
+                             EmailService emailService,
+                             EmailSendLimiter sendLimiter,
+                             TtlUserCache userCache,
+                             ApiTokenService tokenService,
+                             ClientIpResolver clientIp) {
         this.userRepository = userRepository;
         this.roleRepository = roleRepository;
         this.verificationTokenRepository = verificationTokenRepository;
         this.passwordEncoder = passwordEncoder;
         this.authenticationManager = authenticationManager;
         this.emailService = emailService;
+        this.sendLimiter = sendLimiter;
+        this.userCache = userCache;
+        this.tokenService = tokenService;
+        this.clientIp = clientIp;
     }
 
     // -----------------------
@@ -62,10 +81,12 @@ public class ApiAuthController {
     // -----------------------
     @PostMapping("/register")
     @Transactional
-    public ResponseEntity<?> register(@RequestBody RegisterRequest req) {
+    public ResponseEntity<?> register(@RequestBody RegisterRequest req, HttpServletRequest request) {
         if (req == null || isBlank(req.getUsername()) || isBlank(req.getEmail()) || isBlank(req.getPassword())) {
             return badRequest("username, email, and password are required");
         }
+        long retryAfter = sendLimiter.check(req.getEmail(), clientIp.resolve(request));
+        if (retryAfter > 0) return tooManyRequests(retryAfter);
 
         Optional<User> byEmail = userRepository.findByEmail(req.getEmail());
         if (byEmail.isPresent()) {
@@ -147,6 +168,7 @@ public class ApiAuthController {
         // Success → enable user and mark token used
         user.setEnabled(true);
         userRepository.save(user);
+        userCache.evict(user.getEmail());
 
         vt.setUsed(true);
         verificationTokenRepository.save(vt);
@@ -158,9 +180,11 @@ public class ApiAuthController {
     // Resend OTP
     // -----------------------
     @PostMapping("/resend-otp")
-    public ResponseEntity<?> resendOtp(@RequestBody Map<String, String> body) {
+    public ResponseEntity<?> resendOtp(@RequestBody Map<String, String> body, HttpServletRequest request) {
         String email = body.get("email");
         if (isBlank(email)) return badRequest("email is required");
+        long retryAfter = sendLimiter.check(email, clientIp.resolve(request));
+        if (retryAfter > 0) return tooManyRequests(retryAfter);
 
         Optional<User> maybeUser = userRepository.findByEmail(email);
         if (maybeUser.isEmpty()) {
@@ -190,13 +214,6 @@ public ResponseEntity<?> login(@RequestBody LoginRequest loginRequest, HttpServl
                 new UsernamePasswordAuthenticationToken(loginRequest.getEmail(), loginRequest.getPassword())
         );
 
-        // 1) set into security context
-        SecurityContextHolder.getContext().setAuthentication(auth);
-
-        // 2) ensure session exists and save the security context there so subsequent requests are authenticated
-        HttpSession session = request.getSession(true); // creates session if missing
-        session.setAttribute("SPRING_SECURITY_CONTEXT", SecurityContextHolder.getContext());
-
         Optional<User> maybeUser = userRepository.findByEmail(loginRequest.getEmail());
         if (maybeUser.isEmpty()) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -209,8 +226,28 @@ public ResponseEntity<?> login(@RequestBody LoginRequest loginRequest, HttpServl
         resp.put("username", user.getUsername());
         resp.put("email", user.getEmail());
         resp.put("enabled", user.getEnabled());
+
+        if (tokenService.isEnabled()) {
+            // stateless: no session, the client sends the access token as a Bearer header
+            resp.putAll(tokenBody(tokenService.issue(user.getId(), user.getEmail(), user.getPassword(),
+                    auth.getAuthorities())));
+            return ResponseEntity.ok(resp);
+        }
+
+        // 1) set into security context
+        SecurityContextHolder.getContext().setAuthentication(auth);
+
+        // 2) ensure session exists and save the security context there so subsequent requests are authenticated
+        HttpSession session = request.getSession(true); // creates session if missing
+        session.setAttribute("SPRING_SECURITY_CONTEXT", SecurityContextHolder.getContext());
+
         return ResponseEntity.ok(resp);
 
+    } catch (PasswordHashingBusyException e) {
+        // hashing pool saturated (login storm): tell the client to retry instead of holding the thread
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "2")
+                .body(Map.of("error", "Too many sign-ins right now. Please try again shortly."));
     } catch (DisabledException e) {
         return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "Account not verified"));
     } catch (BadCredentialsException e) {
@@ -224,6 +261,28 @@ public ResponseEntity<?> login(@RequestBody LoginRequest loginRequest, HttpServl
     }
 }
 
+    // -----------------------
+    // Refresh tokens (token mode only)
+    // -----------------------
+    @PostMapping("/refresh")
+    public ResponseEntity<?> refresh(@RequestBody Map<String, String> body) {
+        if (!tokenService.isEnabled()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Token authentication is disabled"));
+        }
+        String refreshToken = body.get("refreshToken");
+        if (isBlank(refreshToken)) return badRequest("refreshToken is required");
+
+        try {
+            return tokenService.refresh(refreshToken)
+                    .<ResponseEntity<?>>map(tokens -> ResponseEntity.ok(tokenBody(tokens)))
+                    .orElseGet(() -> ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                            .body(Map.of("error", "Invalid or expired refresh token")));
+        } catch (Exception e) {
+            log.error("Unexpected refresh error", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("error", "internal error"));
+        }
+    }
+
     // -----------------------
     // Helper methods
     // -----------------------
@@ -268,12 +327,27 @@ private VerificationToken createAndSendOtpForUser(User user) {
         return String.valueOf(otp);
     }
 
+    private Map<String, Object> tokenBody(ApiTokenService.Tokens tokens) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("accessToken", tokens.getAccessToken());
+        body.put("refreshToken", tokens.getRefreshToken());
+        body.put("tokenType", "Bearer");
+        body.put("expiresIn", tokens.getExpiresIn());
+        return body;
+    }
+
     private boolean isBlank(String s) { return s == null || s.trim().isEmpty(); }
 
     private ResponseEntity<Map<String, String>> badRequest(String msg) {
         return ResponseEntity.badRequest().body(Map.of("error", msg));
     }
 
+    private ResponseEntity<Map<String, String>> tooManyRequests(long retryAfterSeconds) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(Map.of("error", "Too many requests. Please try again later."));
+    }
+
     // -----------------------
     // DTOs
     // -----------------------
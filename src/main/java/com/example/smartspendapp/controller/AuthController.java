@@ -2,9 +2,14 @@ package com.example.smartspendapp.controller;
 
 import com.example.smartspendapp.model.User;
 import com.example.smartspendapp.repository.UserRepository;
+import com.example.smartspendapp.service.ClientIpResolver;
+import com.example.smartspendapp.service.EmailSendLimiter;
 import com.example.smartspendapp.service.VerificationService;
 import com.example.smartspendapp.service.PasswordResetService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Controller;
@@ -29,16 +34,22 @@ public class AuthController {
     private final VerificationService verificationService;
     private final PasswordResetService passwordResetService;
     private final PasswordEncoder passwordEncoder;
+    private final EmailSendLimiter sendLimiter;
+    private final ClientIpResolver clientIp;
 
     @Autowired
     public AuthController(UserRepository userRepo,
                           VerificationService verificationService,
                           PasswordResetService passwordResetService,
-                          PasswordEncoder passwordEncoder) {
+                          PasswordEncoder passwordEncoder,
+                          EmailSendLimiter sendLimiter,
+                          ClientIpResolver clientIp) {
         this.userRepo = userRepo;
         this.verificationService = verificationService;
         this.passwordResetService = passwordResetService;
         this.passwordEncoder = passwordEncoder;
+        this.sendLimiter = sendLimiter;
+        this.clientIp = clientIp;
     }
 
     // -----------------------
@@ -148,10 +159,16 @@ public class AuthController {
      */
     @PostMapping("/resend-verification")
     @ResponseBody
-    public ResponseEntity<?> resendVerification(@RequestParam("email") String email) {
+    public ResponseEntity<?> resendVerification(@RequestParam("email") String email, HttpServletRequest request) {
         if (email == null || email.isBlank()) {
             return ResponseEntity.badRequest().body(Map.of("message", "Email is required"));
         }
+        long retryAfter = sendLimiter.check(email, clientIp.resolve(request));
+        if (retryAfter > 0) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter))
+                    .body(Map.of("message", "Too many requests. Please try again later."));
+        }
 
         // If user exists and not yet enabled -> create/send token
         userRepo.findByEmail(email).ifPresent(user -> {
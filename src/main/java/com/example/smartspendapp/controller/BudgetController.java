@@ -1,5 +1,6 @@
 package com.example.smartspendapp.controller;
 
+import com.example.smartspendapp.config.AppUserPrincipal;
 import com.example.smartspendapp.dto.BudgetResponseDto;
 import com.example.smartspendapp.model.Budget;
 import com.example.smartspendapp.model.User;
@@ -15,6 +16,7 @@ import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @RestController
@@ -38,10 +40,9 @@ public class BudgetController {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("User not authenticated");
             }
 
-            User user = userRepository.findByEmail(principal.getUsername())
-                    .orElseThrow(() -> new RuntimeException("User not found"));
+            Long userId = userId(principal);
 
-            List<Budget> budgets = budgetService.getBudgetsForUser(user.getId());
+            List<Budget> budgets = budgetService.getBudgetsForUser(userId);
 
             // map to DTOs (avoid serialization of User object)
             List<BudgetResponseDto> dtoList = budgets.stream()
@@ -71,10 +72,8 @@ public class BudgetController {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("User not authenticated");
             }
 
-            User user = userRepository.findByEmail(principal.getUsername())
-                    .orElseThrow(() -> new RuntimeException("User not found"));
-
-            request.setUser(user);
+            // the budget only needs the owner's id for its foreign key
+            request.setUser(userRepository.getReferenceById(userId(principal)));
             request.setMonth(LocalDate.now().withDayOfMonth(1));
 
             Budget saved = budgetService.saveBudget(request);
@@ -95,5 +94,40 @@ public class BudgetController {
                     .body("Failed to add budget: " + e.getMessage());
         }
     }
-}
 
+    // Daily digest opt-in: alerts are collected and emailed once a day instead of one email each
+    @GetMapping("/digest")
+    public ResponseEntity<?> getDigest(@AuthenticationPrincipal UserDetails principal) {
+        if (principal == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("User not authenticated");
+        }
+        return userRepository.findByEmail(principal.getUsername())
+                .<ResponseEntity<?>>map(u -> ResponseEntity.ok(Map.of("enabled", Boolean.TRUE.equals(u.getBudgetDigest()))))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).body("User not found"));
+    }
+
+    @PutMapping("/digest")
+    public ResponseEntity<?> setDigest(@AuthenticationPrincipal UserDetails principal,
+                                       @RequestBody Map<String, Boolean> request) {
+        if (principal == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("User not authenticated");
+        }
+        Boolean enabled = request == null ? null : request.get("enabled");
+        if (enabled == null) {
+            return ResponseEntity.badRequest().body("Field 'enabled' is required");
+        }
+        User user = userRepository.findByEmail(principal.getUsername()).orElse(null);
+        if (user == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("User not found");
+        }
+        user.setBudgetDigest(enabled);
+        userRepository.save(user);
+        log.info("Budget digest {} for {}", enabled ? "enabled" : "disabled", user.getEmail());
+        return ResponseEntity.ok(Map.of("enabled", enabled));
+    }
+
+    private Long userId(UserDetails principal) {
+        return AppUserPrincipal.userId(principal, userRepository::findByEmail)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.smartspendapp.controller;
 
 import com.example.smartspendapp.repository.UserRepository;
+import com.example.smartspendapp.service.TtlUserCache;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
@@ -10,10 +11,12 @@ public class DevCheckController {
 
     private final UserRepository userRepo;
     private final PasswordEncoder encoder;
+    private final TtlUserCache userCache;
 
-    public DevCheckController(UserRepository userRepo, PasswordEncoder encoder) {
+    public DevCheckController(UserRepository userRepo, PasswordEncoder encoder, TtlUserCache userCache) {
         this.userRepo = userRepo;
         this.encoder = encoder;
+        this.userCache = userCache;
     }
 
     /** Returns true/false whether the app's encoder matches the stored hash */
@@ -36,6 +39,7 @@ public class DevCheckController {
         u.setPassword(encoder.encode(newPass));
         u.setEnabled(true);
         userRepo.save(u);
+        userCache.evict(u.getEmail());
         return "reset-done";
     }
 }
@@ -2,6 +2,7 @@ package com.example.smartspendapp.controller;
 
 import com.example.smartspendapp.model.User;
 import com.example.smartspendapp.repository.UserRepository;
+import com.example.smartspendapp.service.TtlUserCache;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpSession;
 import org.slf4j.Logger;
@@ -29,10 +30,12 @@ public class DevFixController {
     private final Logger log = LoggerFactory.getLogger(DevFixController.class);
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final TtlUserCache userCache;
 
-    public DevFixController(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public DevFixController(UserRepository userRepository, PasswordEncoder passwordEncoder, TtlUserCache userCache) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
+        this.userCache = userCache;
     }
 
     // ------------------ (EXISTING) CHECK PASSWORD ------------------
@@ -65,6 +68,7 @@ public class DevFixController {
         user.setPassword(encoded);
         user.setEnabled(true);
         userRepository.save(user);
+        userCache.evict(user.getEmail());
         log.info("Dev: password updated for {}", email);
         return ResponseEntity.ok(Map.of("message", "password-updated", "email", email));
     }
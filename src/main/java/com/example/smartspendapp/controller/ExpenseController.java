@@ -1,5 +1,6 @@
 package com.example.smartspendapp.controller;
 
+import com.example.smartspendapp.config.AppUserPrincipal;
 import com.example.smartspendapp.model.Expense;
 import com.example.smartspendapp.model.User;
 import com.example.smartspendapp.service.ExpenseService;
@@ -99,10 +100,10 @@ public class ExpenseController {
 @GetMapping("/dashboard")
 public String dashboard(Authentication authentication, Model model) {
     if (authentication == null || !authentication.isAuthenticated()) return "redirect:/login";
-    User user = userService.findByEmail(authentication.getName());
-    if (user == null) return "redirect:/login";
+    Viewer viewer = viewer(authentication);
+    if (viewer == null) return "redirect:/login";
 
-    List<Expense> all = expenseService.findByUser(user);
+    List<Expense> all = expenseService.findByUserId(viewer.id);
     if (all == null) all = List.of();
 
     // For initial page render we won't apply table filters here (JS will call /api/expenses)
@@ -134,7 +135,7 @@ public String dashboard(Authentication authentication, Model model) {
             .count();
 
     model.addAttribute("expenses", expenses); // initial table (unfiltered) - JS will overwrite
-    model.addAttribute("name", user.getUsername() == null ? user.getEmail() : user.getUsername());
+    model.addAttribute("name", viewer.name);
     model.addAttribute("totalAmount", total);
     model.addAttribute("highestAmount", highest);
     model.addAttribute("averageAmount", average);
@@ -142,9 +143,9 @@ public String dashboard(Authentication authentication, Model model) {
     model.addAttribute("totalStr", String.format("%.2f", total));
     model.addAttribute("highestStr", String.format("%.2f", highest));
     model.addAttribute("averageStr", String.format("%.2f", average));
-    
-    // <<< ADDED: expose user to Thymeleaf so dashboard JS can read user.id for websocket subscription
-    model.addAttribute("user", user);
+
+    // dashboard JS reads the user id for its websocket subscription
+    model.addAttribute("userId", viewer.id);
 
     return "dashboard";
 }
@@ -167,10 +168,10 @@ public String dashboard(Authentication authentication, Model model) {
         if (authentication == null || !authentication.isAuthenticated()) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Unauthorized");
         }
-        User user = userService.findByEmail(authentication.getName());
-        if (user == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Unknown user");
+        Viewer viewer = viewer(authentication);
+        if (viewer == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Unknown user");
 
-        List<Expense> all = expenseService.findByUser(user);
+        List<Expense> all = expenseService.findByUserId(viewer.id);
         if (all == null) all = List.of();
 
         LocalDate parsedFrom = null;
@@ -190,10 +191,10 @@ public String dashboard(Authentication authentication, Model model) {
     @GetMapping("/expenses")
     public String listExpenses(Authentication authentication, Model model) {
         if (authentication == null || !authentication.isAuthenticated()) return "redirect:/login";
-        User user = userService.findByEmail(authentication.getName());
-        if (user == null) return "redirect:/login";
+        Viewer viewer = viewer(authentication);
+        if (viewer == null) return "redirect:/login";
 
-        List<Expense> all = expenseService.findByUser(user);
+        List<Expense> all = expenseService.findByUserId(viewer.id);
         if (all == null) all = List.of();
 
         List<Expense> expenses = all.stream()
@@ -207,7 +208,7 @@ public String dashboard(Authentication authentication, Model model) {
 
         model.addAttribute("expenses", expenses);
         model.addAttribute("total", String.format("%.2f", total));
-        model.addAttribute("name", user.getUsername() == null ? user.getEmail() : user.getUsername());
+        model.addAttribute("name", viewer.name);
 
         return "expenses";
     }
@@ -227,9 +228,9 @@ public String showAddExpenseForm(Authentication authentication, Model model) {
     model.addAttribute("expense", new Expense());
 
     // You may want to show user's name in header (optional)
-    User user = userService.findByEmail(authentication.getName());
-    if (user != null) {
-        model.addAttribute("name", user.getUsername() == null ? user.getEmail() : user.getUsername());
+    Viewer viewer = viewer(authentication);
+    if (viewer != null) {
+        model.addAttribute("name", viewer.name);
     }
 
     // The view name must match your template filename without .html
@@ -239,10 +240,10 @@ public String showAddExpenseForm(Authentication authentication, Model model) {
     @GetMapping("/incomes")
     public String listIncomes(Authentication authentication, Model model) {
         if (authentication == null || !authentication.isAuthenticated()) return "redirect:/login";
-        User user = userService.findByEmail(authentication.getName());
-        if (user == null) return "redirect:/login";
+        Viewer viewer = viewer(authentication);
+        if (viewer == null) return "redirect:/login";
 
-        List<Expense> all = expenseService.findByUser(user);
+        List<Expense> all = expenseService.findByUserId(viewer.id);
         if (all == null) all = List.of();
 
         List<Expense> incomes = all.stream()
@@ -256,7 +257,7 @@ public String showAddExpenseForm(Authentication authentication, Model model) {
 
         model.addAttribute("expenses", incomes);
         model.addAttribute("total", String.format("%.2f", total));
-        model.addAttribute("name", user.getUsername() == null ? user.getEmail() : user.getUsername());
+        model.addAttribute("name", viewer.name);
 
         return "incomes";
     }
@@ -264,13 +265,13 @@ public String showAddExpenseForm(Authentication authentication, Model model) {
     @PostMapping("/expenses/save")
     public String saveExpenseFromForm(@ModelAttribute Expense expense, Authentication authentication) {
         if (authentication == null || !authentication.isAuthenticated()) return "redirect:/login";
-        User user = userService.findByEmail(authentication.getName());
-        if (user == null) return "redirect:/login";
+        Viewer viewer = viewer(authentication);
+        if (viewer == null) return "redirect:/login";
 
         if (expense.getDate() == null) expense.setDate(LocalDate.now());
         if (expense.getType() == null || expense.getType().isBlank()) expense.setType("expense");
 
-        expense.setUser(user);
+        expense.setUser(userService.getReference(viewer.id));
         expenseService.save(expense);
 
         if ("income".equalsIgnoreCase(expense.getType())) return "redirect:/incomes";
@@ -284,6 +285,30 @@ public String showAddExpenseForm(Authentication authentication, Model model) {
         return "redirect:/expenses";
     }
 
+    /**
+     * Id and display name of the logged-in user. Taken from the AppUserPrincipal of a normal login;
+     * other principals (dev logins) are looked up by email. Null if the user does not exist.
+     */
+    private Viewer viewer(Authentication authentication) {
+        Optional<AppUserPrincipal> principal = AppUserPrincipal.of(authentication);
+        if (principal.isPresent()) {
+            return new Viewer(principal.get().getUserId(), principal.get().getDisplayName());
+        }
+        User user = userService.findByEmail(authentication.getName());
+        if (user == null) return null;
+        return new Viewer(user.getId(), user.getUsername() == null ? user.getEmail() : user.getUsername());
+    }
+
+    private static final class Viewer {
+        final Long id;
+        final String name;
+
+        Viewer(Long id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+    }
+
     // helper
     private static String defaultType(Expense e) {
         if (e == null) return "expense";
@@ -1,41 +1,138 @@
 package com.example.smartspendapp.controller;
 
-import com.example.smartspendapp.model.Notification;
-import com.example.smartspendapp.model.User;
+import com.example.smartspendapp.config.AppUserPrincipal;
+import com.example.smartspendapp.dto.NotificationDto;
 import com.example.smartspendapp.repository.UserRepository;
 import com.example.smartspendapp.service.NotificationService;
+import com.example.smartspendapp.service.NotificationSseHub;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/notifications")
 public class NotificationController {
 
+    static final int DEFAULT_LIMIT = 20;
+    static final int MAX_LIMIT = 100;
+    static final int MAX_MARK_READ_IDS = 500;
+
     private final NotificationService notificationService;
     private final UserRepository userRepository;
+    private final NotificationSseHub sseHub;
 
-    public NotificationController(NotificationService notificationService, UserRepository userRepository) {
+    public NotificationController(NotificationService notificationService,
+                                  UserRepository userRepository,
+                                  NotificationSseHub sseHub) {
         this.notificationService = notificationService;
         this.userRepository = userRepository;
+        this.sseHub = sseHub;
     }
 
+    /**
+     * Keyset-paginated list, newest first.
+     * Examples:
+     *   GET /api/notifications?limit=20
+     *   GET /api/notifications?before=2025-11-20T10:15:30Z,1234&limit=20
+     * The cursor for the next page is "createdAt,id" of the last item returned.
+     */
     @GetMapping
-    public List<Notification> list(@AuthenticationPrincipal UserDetails userDetails) {
-        User user = userRepository.findByEmail(userDetails.getUsername()).orElseThrow();
-        return notificationService.getAll(user);
+    public List<NotificationDto> list(@AuthenticationPrincipal UserDetails userDetails,
+                                   @RequestParam(required = false) String before,
+                                   @RequestParam(required = false) Integer limit) {
+        Long userId = userId(userDetails);
+
+        Instant beforeCreatedAt = null;
+        Long beforeId = null;
+        if (before != null && !before.isBlank()) {
+            String[] parts = before.split(",", 2);
+            try {
+                beforeCreatedAt = Instant.parse(parts[0].trim());
+                beforeId = Long.valueOf(parts[1].trim());
+            } catch (DateTimeParseException | NumberFormatException | ArrayIndexOutOfBoundsException ex) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor. Use before=<createdAt>,<id>.");
+            }
+        }
+
+        int size = (limit == null || limit <= 0) ? DEFAULT_LIMIT : Math.min(limit, MAX_LIMIT);
+        return notificationService.getPage(userId, beforeCreatedAt, beforeId, size);
+    }
+
+    /**
+     * Server-Sent Events stream of this user's notifications ("notification" events, id = notification id)
+     * and unread counts ("unread-count" events), with a heartbeat comment every ~25s.
+     * On reconnect the browser sends Last-Event-ID and the missed notifications are sent first.
+     * Example (browser): new EventSource('/api/notifications/stream')
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@AuthenticationPrincipal UserDetails userDetails,
+                             @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        String email = userDetails.getUsername();
+        SseEmitter emitter = sseHub.subscribe(email);
+        if (lastEventId != null && !lastEventId.isBlank()) {
+            try {
+                long afterId = Long.parseLong(lastEventId.trim());
+                sseHub.replay(email, emitter, notificationService.replaySince(email, afterId));
+            } catch (NumberFormatException ignored) {
+                // not one of our ids; just continue with live events
+            }
+        }
+        return emitter;
     }
 
     @GetMapping("/unread")
-    public List<Notification> unread(@AuthenticationPrincipal UserDetails userDetails) {
-        User user = userRepository.findByEmail(userDetails.getUsername()).orElseThrow();
-        return notificationService.getUnread(user);
+    public List<NotificationDto> unread(@AuthenticationPrincipal UserDetails userDetails) {
+        Long userId = userId(userDetails);
+        return notificationService.getUnread(userId);
+    }
+
+    /**
+     * Cheap badge count (index-only COUNT), so the header does not need to download the list.
+     */
+    @GetMapping("/unread-count")
+    public Map<String, Long> unreadCount(@AuthenticationPrincipal UserDetails userDetails) {
+        Long userId = userId(userDetails);
+        return Map.of("count", notificationService.countUnread(userId));
+    }
+
+    /**
+     * Marks a batch of notifications read.
+     * Example: POST /api/notifications/mark-read  body: [12, 13, 20]  ->  {"updated": 3}
+     */
+    @PostMapping("/mark-read")
+    public Map<String, Integer> markRead(@AuthenticationPrincipal UserDetails userDetails,
+                                         @RequestBody List<Long> ids) {
+        if (ids != null && ids.size() > MAX_MARK_READ_IDS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "At most " + MAX_MARK_READ_IDS + " ids per request.");
+        }
+        Long userId = userId(userDetails);
+        return Map.of("updated", notificationService.markRead(userId, userDetails.getUsername(), ids));
+    }
+
+    @PostMapping("/mark-all-read")
+    public Map<String, Integer> markAllRead(@AuthenticationPrincipal UserDetails userDetails) {
+        Long userId = userId(userDetails);
+        return Map.of("updated", notificationService.markAllRead(userId, userDetails.getUsername()));
     }
 
     @PostMapping("/mark-read/{id}")
-    public void markRead(@PathVariable Long id) {
-        notificationService.markRead(id);
+    public void markRead(@AuthenticationPrincipal UserDetails userDetails, @PathVariable Long id) {
+        Long userId = userId(userDetails);
+        notificationService.markRead(userId, userDetails.getUsername(), List.of(id));
+    }
+
+    // from the session principal; only principals without an id (dev logins) cost a lookup
+    private Long userId(UserDetails userDetails) {
+        return AppUserPrincipal.userId(userDetails, userRepository::findByEmail).orElseThrow();
     }
 }
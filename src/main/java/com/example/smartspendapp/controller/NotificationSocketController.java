@@ -0,0 +1,42 @@
+package com.example.smartspendapp.controller;
+
+import com.example.smartspendapp.service.NotificationService;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.messaging.simp.annotation.SubscribeMapping;
+import org.springframework.stereotype.Controller;
+
+import java.security.Principal;
+import java.util.List;
+
+/**
+ * STOMP endpoints for the notification client.
+ */
+@Controller
+public class NotificationSocketController {
+
+    private final NotificationService notificationService;
+
+    public NotificationSocketController(NotificationService notificationService) {
+        this.notificationService = notificationService;
+    }
+
+    /**
+     * Reconnect replay. The client subscribes to /app/notifications.replay with a
+     * "last-seen-id" header and receives, once and only on that subscription, the
+     * notifications it missed (oldest first). No header means nothing to replay.
+     */
+    @SubscribeMapping("/notifications.replay")
+    public List<Object> replay(Principal principal,
+                               @Header(name = "last-seen-id", required = false) String lastSeenId) {
+        if (principal == null || lastSeenId == null || lastSeenId.isBlank()) {
+            return List.of();
+        }
+        long afterId;
+        try {
+            afterId = Long.parseLong(lastSeenId.trim());
+        } catch (NumberFormatException ex) {
+            return List.of();
+        }
+        return notificationService.replaySince(principal.getName(), afterId);
+    }
+}
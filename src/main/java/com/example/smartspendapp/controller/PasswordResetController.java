@@ -1,7 +1,13 @@
 package com.example.smartspendapp.controller;
 
 import com.example.smartspendapp.repository.UserRepository;
+import com.example.smartspendapp.service.ClientIpResolver;
+import com.example.smartspendapp.service.EmailSendLimiter;
 import com.example.smartspendapp.service.PasswordResetService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
@@ -11,14 +17,27 @@ public class PasswordResetController {
 
     private final UserRepository userRepo;
     private final PasswordResetService resetService;
+    private final EmailSendLimiter sendLimiter;
+    private final ClientIpResolver clientIp;
 
-    public PasswordResetController(UserRepository userRepo, PasswordResetService resetService) {
+    public PasswordResetController(UserRepository userRepo, PasswordResetService resetService, EmailSendLimiter sendLimiter,
+                                   ClientIpResolver clientIp) {
         this.userRepo = userRepo;
         this.resetService = resetService;
+        this.sendLimiter = sendLimiter;
+        this.clientIp = clientIp;
     }
 
     @PostMapping("/forgot-password")
-    public String forgotPassword(@RequestParam String email, Model model) {
+    public String forgotPassword(@RequestParam String email, Model model,
+                                 HttpServletRequest request, HttpServletResponse response) {
+        long retryAfter = sendLimiter.check(email, clientIp.resolve(request));
+        if (retryAfter > 0) {
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+            model.addAttribute("message", "Too many reset requests. Please try again in a few minutes.");
+            return "forgot-password-result";
+        }
         userRepo.findByEmail(email).ifPresent(resetService::createResetTokenAndSend);
         // don't reveal whether email exists
         model.addAttribute("message", "If an account exists for that email, you'll receive an email with reset instructions.");
@@ -1,7 +1,7 @@
 package com.example.smartspendapp.controller;
 
+import com.example.smartspendapp.config.AppUserPrincipal;
 import com.example.smartspendapp.model.Expense;
-import com.example.smartspendapp.model.User;
 import com.example.smartspendapp.repository.ExpenseRepository;
 import com.example.smartspendapp.repository.UserRepository;
 import com.example.smartspendapp.service.ReportService;
@@ -55,7 +55,7 @@ public class ReportController {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
             }
 
-            User user = userRepository.findByEmail(principal.getUsername()).orElseThrow();
+            Long userId = AppUserPrincipal.userId(principal, userRepository::findByEmail).orElseThrow();
 
             // Convert LocalDate -> LocalDateTime bounds
             LocalDateTime startDateTime = (from == null) ? null : from.atStartOfDay();
@@ -64,14 +64,14 @@ public class ReportController {
             List<Expense> rows;
             if (startDateTime == null && endDateTime == null) {
                 // no date filter
-                rows = expenseRepository.findByUserOrderByDateAsc(user);
+                rows = expenseRepository.findByUserIdOrderByDateAsc(userId);
             } else {
                 // If either bound is null, replace with extreme values so repository between works
                 LocalDateTime start = (startDateTime == null) ? LocalDateTime.MIN : startDateTime;
                 LocalDateTime end = (endDateTime == null) ? LocalDateTime.MAX : endDateTime;
 
-                rows = expenseRepository.findByUserAndDateBetweenOrderByDateAsc(
-    user,
+                rows = expenseRepository.findByUserIdAndDateBetweenOrderByDateAsc(
+    userId,
     startDateTime.toLocalDate(),
     endDateTime.toLocalDate()
 );
@@ -122,7 +122,7 @@ public class ReportController {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
             }
 
-            User user = userRepository.findByEmail(principal.getUsername()).orElseThrow();
+            Long userId = AppUserPrincipal.userId(principal, userRepository::findByEmail).orElseThrow();
 
             // Convert LocalDate -> LocalDateTime bounds
             LocalDateTime startDateTime = (from == null) ? null : from.atStartOfDay();
@@ -130,12 +130,12 @@ public class ReportController {
 
             List<Expense> rows;
             if (startDateTime == null && endDateTime == null) {
-                rows = expenseRepository.findByUserOrderByDateAsc(user);
+                rows = expenseRepository.findByUserIdOrderByDateAsc(userId);
             } else {
                 LocalDateTime start = (startDateTime == null) ? LocalDateTime.MIN : startDateTime;
                 LocalDateTime end = (endDateTime == null) ? LocalDateTime.MAX : endDateTime;
-                rows = expenseRepository.findByUserAndDateBetweenOrderByDateAsc(
-    user,
+                rows = expenseRepository.findByUserIdAndDateBetweenOrderByDateAsc(
+    userId,
     startDateTime.toLocalDate(),
     endDateTime.toLocalDate()
 );
@@ -0,0 +1,40 @@
+package com.example.smartspendapp.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Read-only row used by the budget alert sweep: one current-month budget
+ * together with its owner's email, digest preference and the amount spent so far this month.
+ */
+public class BudgetAlertCandidate {
+    private final Long budgetId;
+    private final Long userId;
+    private final String email;
+    private final String category;
+    private final LocalDate month;
+    private final BigDecimal limitAmount;
+    private final BigDecimal spentAmount;
+    private final boolean digest;
+
+    public BudgetAlertCandidate(Long budgetId, Long userId, String email, String category, LocalDate month,
+                                BigDecimal limitAmount, Number spentAmount, Boolean digest) {
+        this.budgetId = budgetId;
+        this.userId = userId;
+        this.email = email;
+        this.category = category;
+        this.month = month;
+        this.limitAmount = limitAmount;
+        this.spentAmount = spentAmount == null ? BigDecimal.ZERO : new BigDecimal(spentAmount.toString());
+        this.digest = Boolean.TRUE.equals(digest);
+    }
+
+    public Long getBudgetId() { return budgetId; }
+    public Long getUserId() { return userId; }
+    public String getEmail() { return email; }
+    public String getCategory() { return category; }
+    public LocalDate getMonth() { return month; }
+    public BigDecimal getLimitAmount() { return limitAmount; }
+    public BigDecimal getSpentAmount() { return spentAmount; }
+    public boolean isDigest() { return digest; }
+}
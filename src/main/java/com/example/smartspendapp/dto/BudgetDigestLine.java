@@ -0,0 +1,40 @@
+package com.example.smartspendapp.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * One line of a user's budget digest: all alerts of the period for one budget (category and month),
+ * aggregated. Lines of the same user arrive next to each other (the digest query orders by user).
+ */
+public class BudgetDigestLine {
+    private final Long userId;
+    private final String email;
+    private final String category;
+    private final LocalDate month;
+    private final boolean exceeded;
+    private final BigDecimal spentAmount;
+    private final BigDecimal limitAmount;
+    private final long alerts;
+
+    public BudgetDigestLine(Long userId, String email, String category, LocalDate month, Number exceeded,
+                            BigDecimal spentAmount, BigDecimal limitAmount, Long alerts) {
+        this.userId = userId;
+        this.email = email;
+        this.category = category;
+        this.month = month;
+        this.exceeded = exceeded != null && exceeded.intValue() > 0;
+        this.spentAmount = spentAmount == null ? BigDecimal.ZERO : spentAmount;
+        this.limitAmount = limitAmount == null ? BigDecimal.ZERO : limitAmount;
+        this.alerts = alerts == null ? 0 : alerts;
+    }
+
+    public Long getUserId() { return userId; }
+    public String getEmail() { return email; }
+    public String getCategory() { return category; }
+    public LocalDate getMonth() { return month; }
+    public boolean isExceeded() { return exceeded; }
+    public BigDecimal getSpentAmount() { return spentAmount; }
+    public BigDecimal getLimitAmount() { return limitAmount; }
+    public long getAlerts() { return alerts; }
+}
@@ -0,0 +1,44 @@
+package com.example.smartspendapp.dto;
+
+import java.time.Instant;
+
+/**
+ * What the notifications API sends to the browser. Filled straight from a JPQL
+ * projection, so the owning user row is never loaded or serialised.
+ */
+public class NotificationDto {
+    private Long id;
+    private String title;
+    private String message;
+    private boolean readFlag;
+    private Instant createdAt;
+    private int count = 1;
+
+    public NotificationDto() {}
+
+    public NotificationDto(Long id, String title, String message, boolean readFlag, Instant createdAt) {
+        this.id = id;
+        this.title = title;
+        this.message = message;
+        this.readFlag = readFlag;
+        this.createdAt = createdAt;
+    }
+
+    public NotificationDto(Long id, String title, String message, boolean readFlag, Instant createdAt, Integer count) {
+        this(id, title, message, readFlag, createdAt);
+        this.count = count == null ? 1 : count;
+    }
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public String getTitle() { return title; }
+    public void setTitle(String title) { this.title = title; }
+    public String getMessage() { return message; }
+    public void setMessage(String message) { this.message = message; }
+    public boolean isReadFlag() { return readFlag; }
+    public void setReadFlag(boolean readFlag) { this.readFlag = readFlag; }
+    public Instant getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+    public int getCount() { return count; }
+    public void setCount(int count) { this.count = count; }
+}
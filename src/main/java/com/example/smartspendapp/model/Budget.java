@@ -5,7 +5,10 @@ import java.math.BigDecimal;
 import java.time.LocalDate;
 
 @Entity
-@Table(name = "budgets")
+@Table(name = "budgets", indexes = {
+        // alert sweep: WHERE month = ? AND id > ? ORDER BY id (keyset pages, one range scan per shard)
+        @Index(name = "idx_budgets_month_id", columnList = "month, id")
+})
 public class Budget {
 
     @Id
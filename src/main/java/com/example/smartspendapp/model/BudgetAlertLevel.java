@@ -0,0 +1,10 @@
+package com.example.smartspendapp.model;
+
+/**
+ * Alert level of a budget, in escalation order (ordinal is compared).
+ */
+public enum BudgetAlertLevel {
+    NONE,
+    NEAR,
+    EXCEEDED
+}
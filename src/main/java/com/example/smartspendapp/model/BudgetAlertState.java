@@ -0,0 +1,58 @@
+package com.example.smartspendapp.model;
+
+import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
+import java.time.Instant;
+
+/**
+ * Last alert level that was delivered for a budget. The alert sweep only notifies
+ * when a budget moves to a higher level than the one stored here.
+ */
+@Entity
+@Table(name = "budget_alert_state")
+public class BudgetAlertState implements Persistable<Long> {
+
+    // same value as budgets.id (one row per budget)
+    @Id
+    @Column(name = "budget_id")
+    private Long budgetId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "level", nullable = false, length = 16)
+    private BudgetAlertLevel level;
+
+    @Column(name = "sent_at")
+    private Instant sentAt;
+
+    // lets save() insert directly instead of select-then-insert for a new assigned id
+    @Transient
+    private boolean isNew = true;
+
+    public BudgetAlertState() {}
+
+    public BudgetAlertState(Long budgetId, BudgetAlertLevel level, Instant sentAt) {
+        this.budgetId = budgetId;
+        this.level = level;
+        this.sentAt = sentAt;
+    }
+
+    public Long getBudgetId() { return budgetId; }
+    public void setBudgetId(Long budgetId) { this.budgetId = budgetId; }
+
+    public BudgetAlertLevel getLevel() { return level; }
+    public void setLevel(BudgetAlertLevel level) { this.level = level; }
+
+    public Instant getSentAt() { return sentAt; }
+    public void setSentAt(Instant sentAt) { this.sentAt = sentAt; }
+
+    @Override
+    public Long getId() { return budgetId; }
+
+    @Override
+    public boolean isNew() { return isNew; }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() { this.isNew = false; }
+}
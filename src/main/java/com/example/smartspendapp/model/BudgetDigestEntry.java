@@ -0,0 +1,80 @@
+package com.example.smartspendapp.model;
+
+import jakarta.persistence.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * A budget alert held back for the daily digest of a user who opted in (User#budgetDigest).
+ * Rows are written by the alert sweep and removed by BudgetDigestJob once the digest is queued.
+ */
+@Entity
+@Table(name = "budget_digest_entries", indexes = {
+        // digest pass: everything before the cutoff, grouped per user
+        @Index(name = "idx_budget_digest_created_user", columnList = "created_at, user_id")
+})
+public class BudgetDigestEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    private String category;
+
+    // first day of the budget month the alert was raised for
+    private LocalDate month;
+
+    @Column(nullable = false)
+    private boolean exceeded;
+
+    @Column(name = "spent_amount")
+    private BigDecimal spentAmount;
+
+    @Column(name = "limit_amount")
+    private BigDecimal limitAmount;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt = Instant.now();
+
+    public BudgetDigestEntry() {}
+
+    public BudgetDigestEntry(User user, String category, LocalDate month, boolean exceeded,
+                             BigDecimal spentAmount, BigDecimal limitAmount) {
+        this.user = user;
+        this.category = category;
+        this.month = month;
+        this.exceeded = exceeded;
+        this.spentAmount = spentAmount;
+        this.limitAmount = limitAmount;
+    }
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public User getUser() { return user; }
+    public void setUser(User user) { this.user = user; }
+
+    public String getCategory() { return category; }
+    public void setCategory(String category) { this.category = category; }
+
+    public LocalDate getMonth() { return month; }
+    public void setMonth(LocalDate month) { this.month = month; }
+
+    public boolean isExceeded() { return exceeded; }
+    public void setExceeded(boolean exceeded) { this.exceeded = exceeded; }
+
+    public BigDecimal getSpentAmount() { return spentAmount; }
+    public void setSpentAmount(BigDecimal spentAmount) { this.spentAmount = spentAmount; }
+
+    public BigDecimal getLimitAmount() { return limitAmount; }
+    public void setLimitAmount(BigDecimal limitAmount) { this.limitAmount = limitAmount; }
+
+    public Instant getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+}
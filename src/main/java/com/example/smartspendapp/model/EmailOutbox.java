@@ -0,0 +1,121 @@
+package com.example.smartspendapp.model;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+/**
+ * An email waiting to be sent (see EmailOutboxDispatcher). Rows are inserted in the caller's
+ * transaction, so an email only goes out if the work that triggered it was committed.
+ */
+@Entity
+@Table(name = "email_outbox", indexes = {
+        // the dispatcher's claim query: due rows by status and next attempt
+        @Index(name = "idx_email_outbox_status_next", columnList = "status, next_attempt_at"),
+        // retention: finished rows (SENT / DEAD) by age
+        @Index(name = "idx_email_outbox_status_created", columnList = "status, created_at")
+})
+public class EmailOutbox {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "recipient", nullable = false, length = 320)
+    private String to;
+
+    @Column(nullable = false, length = 500)
+    private String subject;
+
+    // plain-text body; always present
+    @Column(nullable = false, columnDefinition = "text")
+    private String body;
+
+    // optional HTML alternative; when set the email is sent as multipart/alternative
+    @Column(name = "html_body", columnDefinition = "text")
+    private String htmlBody;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private EmailStatus status = EmailStatus.PENDING;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private Instant nextAttemptAt;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    // node that claimed the row and when; a SENDING row whose claim is too old is retried
+    @Column(name = "locked_by", length = 128)
+    private String lockedBy;
+
+    @Column(name = "locked_at")
+    private Instant lockedAt;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "sent_at")
+    private Instant sentAt;
+
+    // set for emails that are only wanted while this in-app notification is unread (deferred budget
+    // alerts); the dispatcher drops the row instead of sending it if the notification was read or deleted
+    @Column(name = "notification_id")
+    private Long notificationId;
+
+    public EmailOutbox() {}
+
+    public EmailOutbox(String to, String subject, String body, String htmlBody) {
+        this.to = to;
+        this.subject = subject;
+        this.body = body;
+        this.htmlBody = htmlBody;
+        this.createdAt = Instant.now();
+        this.nextAttemptAt = this.createdAt;
+    }
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getTo() { return to; }
+    public void setTo(String to) { this.to = to; }
+
+    public String getSubject() { return subject; }
+    public void setSubject(String subject) { this.subject = subject; }
+
+    public String getBody() { return body; }
+    public void setBody(String body) { this.body = body; }
+
+    public String getHtmlBody() { return htmlBody; }
+    public void setHtmlBody(String htmlBody) { this.htmlBody = htmlBody; }
+
+    public EmailStatus getStatus() { return status; }
+    public void setStatus(EmailStatus status) { this.status = status; }
+
+    public int getAttempts() { return attempts; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+
+    public Instant getNextAttemptAt() { return nextAttemptAt; }
+    public void setNextAttemptAt(Instant nextAttemptAt) { this.nextAttemptAt = nextAttemptAt; }
+
+    public String getLastError() { return lastError; }
+    public void setLastError(String lastError) { this.lastError = lastError; }
+
+    public String getLockedBy() { return lockedBy; }
+    public void setLockedBy(String lockedBy) { this.lockedBy = lockedBy; }
+
+    public Instant getLockedAt() { return lockedAt; }
+    public void setLockedAt(Instant lockedAt) { this.lockedAt = lockedAt; }
+
+    public Instant getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+
+    public Instant getSentAt() { return sentAt; }
+    public void setSentAt(Instant sentAt) { this.sentAt = sentAt; }
+
+    public Long getNotificationId() { return notificationId; }
+    public void setNotificationId(Long notificationId) { this.notificationId = notificationId; }
+}
@@ -0,0 +1,11 @@
+package com.example.smartspendapp.model;
+
+/**
+ * Delivery state of an {@link EmailOutbox} row.
+ */
+public enum EmailStatus {
+    PENDING,
+    SENDING,
+    SENT,
+    DEAD
+}
@@ -6,7 +6,10 @@ import java.time.LocalDate;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
 @Entity
-@Table(name = "expenses")
+@Table(name = "expenses", indexes = {
+        // per-user lists and the alert sweep's month spend: WHERE user_id = ? AND date BETWEEN ...
+        @Index(name = "idx_expenses_user_date", columnList = "user_id, date")
+})
 public class Expense {
 
     @Id
@@ -29,11 +32,11 @@ public class Expense {
     @Column(length = 1000)
     private String description;
 
-    // ✅ Many-to-one relationship with User
-   @ManyToOne
-@JoinColumn(name = "user_id")
-@JsonIgnore
-private User user;
+    // ✅ Many-to-one relationship with User; lazy, expense lists are read by user id and never need the row
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id")
+    @JsonIgnore
+    private User user;
 
 
     // --- Getters and Setters ---
@@ -1,18 +1,27 @@
 package com.example.smartspendapp.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import java.time.Instant;
 
 @Entity
-@Table(name = "notifications")
+@Table(name = "notifications", indexes = {
+        // unread badge: COUNT(*) WHERE user_id = ? AND read_flag = false
+        @Index(name = "idx_notifications_user_read_created", columnList = "user_id, read_flag, created_at"),
+        // keyset paging: WHERE user_id = ? ORDER BY created_at DESC, id DESC
+        @Index(name = "idx_notifications_user_created_id", columnList = "user_id, created_at, id"),
+        // retention: WHERE read_flag = true AND created_at < ? (a range scan, not a table scan per batch)
+        @Index(name = "idx_notifications_read_created", columnList = "read_flag, created_at")
+})
 public class Notification {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @ManyToOne(fetch = FetchType.EAGER)
+    @JsonIgnore
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id")
     private User user;
 
@@ -21,10 +30,16 @@ public class Notification {
     @Column(length = 2000)
     private String body;
 
+    @Column(name = "read_flag")
     private boolean readFlag = false;
 
+    @Column(name = "created_at")
     private Instant createdAt = Instant.now();
 
+    // how many notifications this row stands for after coalescing a burst (null = 1, rows before coalescing)
+    @Column(name = "coalesced_count")
+    private Integer coalescedCount;
+
     public Notification() {}
 
     // ----------- ID -----------
@@ -71,5 +86,9 @@ public class Notification {
     // ----------- CREATED AT -----------
     public Instant getCreatedAt() { return createdAt; }
     public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+
+    // ----------- COALESCED COUNT -----------
+    public Integer getCoalescedCount() { return coalescedCount; }
+    public void setCoalescedCount(Integer coalescedCount) { this.coalescedCount = coalescedCount; }
 }
 
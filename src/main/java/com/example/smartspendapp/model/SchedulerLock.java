@@ -0,0 +1,66 @@
+package com.example.smartspendapp.model;
+
+import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
+import java.time.Instant;
+
+/**
+ * Lease row for a scheduled job (see SchedulerLockService). A node owns the job
+ * while lockedUntil is in the future and owner is its instance id.
+ */
+@Entity
+@Table(name = "scheduler_locks")
+public class SchedulerLock implements Persistable<String> {
+
+    @Id
+    @Column(name = "name", length = 64)
+    private String name;
+
+    @Column(name = "owner", length = 128)
+    private String owner;
+
+    @Column(name = "locked_until", nullable = false)
+    private Instant lockedUntil;
+
+    @Column(name = "locked_at")
+    private Instant lockedAt;
+
+    @Column(name = "heartbeat_at")
+    private Instant heartbeatAt;
+
+    @Transient
+    private boolean isNew = true;
+
+    public SchedulerLock() {}
+
+    public SchedulerLock(String name, Instant lockedUntil) {
+        this.name = name;
+        this.lockedUntil = lockedUntil;
+    }
+
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+
+    public String getOwner() { return owner; }
+    public void setOwner(String owner) { this.owner = owner; }
+
+    public Instant getLockedUntil() { return lockedUntil; }
+    public void setLockedUntil(Instant lockedUntil) { this.lockedUntil = lockedUntil; }
+
+    public Instant getLockedAt() { return lockedAt; }
+    public void setLockedAt(Instant lockedAt) { this.lockedAt = lockedAt; }
+
+    public Instant getHeartbeatAt() { return heartbeatAt; }
+    public void setHeartbeatAt(Instant heartbeatAt) { this.heartbeatAt = heartbeatAt; }
+
+    @Override
+    public String getId() { return name; }
+
+    @Override
+    public boolean isNew() { return isNew; }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() { this.isNew = false; }
+}
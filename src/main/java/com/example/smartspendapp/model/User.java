@@ -32,6 +32,10 @@ public class User {
     @Column(name = "created_at")
     private Instant createdAt = Instant.now();
 
+    // opt-in: budget alerts are collected and emailed once a day instead of one email per alert
+    @Column(name = "budget_digest")
+    private Boolean budgetDigest = false;
+
     // roles
     @ManyToMany(fetch = FetchType.EAGER)
     @JoinTable(name = "user_roles",
@@ -60,6 +64,9 @@ public class User {
     public Instant getCreatedAt() { return createdAt; }
     public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
 
+    public Boolean getBudgetDigest() { return budgetDigest; }
+    public void setBudgetDigest(Boolean budgetDigest) { this.budgetDigest = budgetDigest; }
+
     public Set<Role> getRoles() { return roles; }
     public void setRoles(Set<Role> roles) { this.roles = roles; }
 
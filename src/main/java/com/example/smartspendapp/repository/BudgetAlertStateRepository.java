@@ -0,0 +1,7 @@
+package com.example.smartspendapp.repository;
+
+import com.example.smartspendapp.model.BudgetAlertState;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface BudgetAlertStateRepository extends JpaRepository<BudgetAlertState, Long> {
+}
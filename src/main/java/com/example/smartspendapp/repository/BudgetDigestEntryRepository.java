@@ -0,0 +1,41 @@
+package com.example.smartspendapp.repository;
+
+import com.example.smartspendapp.dto.BudgetDigestLine;
+import com.example.smartspendapp.model.BudgetDigestEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface BudgetDigestEntryRepository extends JpaRepository<BudgetDigestEntry, Long> {
+
+    /**
+     * Every digest of the period in one statement: entries created before {@code cutoff}, one line
+     * per (user, category, month) with the highest level reached, the number of alerts folded in and
+     * the spend/limit of the latest entry (highest id), joined back by primary key. Ordered by user
+     * so the caller can cut the result into one digest per user.
+     */
+    @Query("SELECT new com.example.smartspendapp.dto.BudgetDigestLine(" +
+           "  u.id, u.email, g.category, g.month, g.exceeded, d.spentAmount, d.limitAmount, g.alerts) " +
+           "FROM (SELECT x.user.id AS userId, x.category AS category, x.month AS month, " +
+           "        MAX(CASE WHEN x.exceeded = true THEN 1 ELSE 0 END) AS exceeded, " +
+           "        COUNT(x) AS alerts, MAX(x.id) AS latestId " +
+           "      FROM BudgetDigestEntry x " +
+           "      WHERE x.createdAt < :cutoff " +
+           "      GROUP BY x.user.id, x.category, x.month) g " +
+           "JOIN BudgetDigestEntry d ON d.id = g.latestId " +
+           "JOIN d.user u " +
+           "ORDER BY u.id, g.month, g.category")
+    List<BudgetDigestLine> findDigestLines(@Param("cutoff") Instant cutoff);
+
+    /** Removes the entries a digest was built from (same cutoff), for one chunk of users. */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM BudgetDigestEntry d WHERE d.user.id IN :userIds AND d.createdAt < :cutoff")
+    int deleteForUsersBefore(@Param("userIds") Collection<Long> userIds, @Param("cutoff") Instant cutoff);
+}
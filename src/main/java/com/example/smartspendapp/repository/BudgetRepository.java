@@ -1,13 +1,50 @@
 package com.example.smartspendapp.repository;
 
+import com.example.smartspendapp.dto.BudgetAlertCandidate;
 import com.example.smartspendapp.model.Budget;
 import com.example.smartspendapp.model.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
 
 public interface BudgetRepository extends JpaRepository<Budget, Long> {
     List<Budget> findByUser(User user);
+    List<Budget> findByUserId(Long userId);
     Optional<Budget> findByUserAndCategoryAndMonth(User user, String category, LocalDate month);
+
+    /**
+     * One keyset page of budgets the alert sweep has to evaluate: only budgets for the given month
+     * with a positive limit, with the owner's email and digest preference joined in and the month's spend computed in the
+     * same statement (same category semantics as ExpenseRepository#getTotalSpentByCategoryAndRange).
+     * Pass the last budgetId of the previous page as afterId (0 for the first page) and
+     * PageRequest.of(0, size) as the page size.
+     * Only users with user_id % bucketCount == bucket are returned, so the sweep can be split into
+     * disjoint shards (bucketCount = 1, bucket = 0 selects everything).
+     * The MOD filter cannot use an index; each shard walks the month's budgets through
+     * idx_budgets_month_id and computes spend through idx_expenses_user_date (see Budget, Expense).
+     */
+    @Query("SELECT new com.example.smartspendapp.dto.BudgetAlertCandidate(" +
+           "  b.id, u.id, u.email, b.category, b.month, b.limitAmount, " +
+           "  (SELECT COALESCE(SUM(e.amount), 0) FROM Expense e " +
+           "    WHERE e.user = u " +
+           "    AND (b.category IS NULL OR b.category = '' OR LOWER(e.category) = LOWER(b.category)) " +
+           "    AND e.date >= :monthStart AND e.date < :nextMonthStart), " +
+           "  u.budgetDigest) " +
+           "FROM Budget b JOIN b.user u " +
+           "WHERE b.month = :monthStart AND b.limitAmount > 0 AND b.id > :afterId " +
+           "AND MOD(u.id, :bucketCount) = :bucket " +
+           "ORDER BY b.id")
+    List<BudgetAlertCandidate> findAlertCandidates(
+            @Param("monthStart") LocalDate monthStart,
+            @Param("nextMonthStart") LocalDate nextMonthStart,
+            @Param("afterId") Long afterId,
+            @Param("bucketCount") int bucketCount,
+            @Param("bucket") int bucket,
+            Pageable page
+    );
 }
@@ -0,0 +1,85 @@
+package com.example.smartspendapp.repository;
+
+import com.example.smartspendapp.model.EmailOutbox;
+import com.example.smartspendapp.model.EmailStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface EmailOutboxRepository extends JpaRepository<EmailOutbox, Long> {
+
+    /**
+     * Claims up to {@code limit} due rows for {@code owner} in one statement: PENDING rows whose
+     * next attempt is due, plus SENDING rows whose claim is older than {@code staleBefore} (the
+     * node that claimed them died). SKIP LOCKED lets several nodes claim concurrently without
+     * waiting on each other or taking the same row. Claimed rows are tagged with (owner, claimedAt)
+     * so they can be read back with {@link #findClaimed}; attempts counts claims.
+     */
+    @Modifying(clearAutomatically = true)
+    @Transactional
+    @Query(value = "UPDATE email_outbox SET status = 'SENDING', locked_by = :owner, locked_at = :claimedAt, " +
+                   "attempts = attempts + 1 " +
+                   "WHERE id IN (SELECT id FROM email_outbox " +
+                   "  WHERE (status = 'PENDING' AND next_attempt_at <= :claimedAt) " +
+                   "     OR (status = 'SENDING' AND locked_at < :staleBefore) " +
+                   "  ORDER BY next_attempt_at, id LIMIT :limit FOR UPDATE SKIP LOCKED)",
+           nativeQuery = true)
+    int claimDue(@Param("owner") String owner,
+                 @Param("claimedAt") Instant claimedAt,
+                 @Param("staleBefore") Instant staleBefore,
+                 @Param("limit") int limit);
+
+    @Query("SELECT e FROM EmailOutbox e WHERE e.status = com.example.smartspendapp.model.EmailStatus.SENDING " +
+           "AND e.lockedBy = :owner AND e.lockedAt = :claimedAt ORDER BY e.id")
+    List<EmailOutbox> findClaimed(@Param("owner") String owner, @Param("claimedAt") Instant claimedAt);
+
+    /** Marks a delivered batch SENT in one statement, for the rows this node still holds. */
+    @Modifying
+    @Transactional
+    @Query("UPDATE EmailOutbox e SET e.status = com.example.smartspendapp.model.EmailStatus.SENT, e.sentAt = :now, " +
+           "e.lastError = null WHERE e.id IN :ids AND e.lockedBy = :owner " +
+           "AND e.status = com.example.smartspendapp.model.EmailStatus.SENDING")
+    int markSent(@Param("ids") Collection<Long> ids, @Param("owner") String owner, @Param("now") Instant now);
+
+    /**
+     * Hands a failed row back for another attempt at {@code nextAttemptAt}, or parks it as DEAD
+     * when {@code status} says so. Only applies while this node still holds the claim.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE EmailOutbox e SET e.status = :status, e.nextAttemptAt = :nextAttemptAt, e.lastError = :error " +
+           "WHERE e.id = :id AND e.lockedBy = :owner " +
+           "AND e.status = com.example.smartspendapp.model.EmailStatus.SENDING")
+    int markFailed(@Param("id") Long id,
+                   @Param("owner") String owner,
+                   @Param("status") EmailStatus status,
+                   @Param("nextAttemptAt") Instant nextAttemptAt,
+                   @Param("error") String error);
+
+    /** Deletes claimed rows that are no longer wanted (see EmailOutbox#notificationId), for the rows this node still holds. */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM EmailOutbox e WHERE e.id IN :ids AND e.lockedBy = :owner " +
+           "AND e.status = com.example.smartspendapp.model.EmailStatus.SENDING")
+    int deleteClaimed(@Param("ids") Collection<Long> ids, @Param("owner") String owner);
+
+    long countByStatus(EmailStatus status);
+
+    /**
+     * Retention: deletes up to batchSize rows in a finished state ('SENT' or 'DEAD') created before
+     * cutoff, in its own short transaction. Uses idx_email_outbox_status_created.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM email_outbox WHERE id IN (" +
+                   "SELECT id FROM email_outbox WHERE status = :status AND created_at < :cutoff LIMIT :batchSize)",
+           nativeQuery = true)
+    int deleteFinishedBefore(@Param("status") String status, @Param("cutoff") Instant cutoff,
+                             @Param("batchSize") int batchSize);
+}
@@ -19,6 +19,11 @@ public interface ExpenseRepository extends JpaRepository<Expense, Long> {
     // Range query using LocalDate (inclusive start, inclusive end)
     List<Expense> findByUserAndDateBetweenOrderByDateAsc(User user, LocalDate start, LocalDate end);
 
+    // same finders keyed by the owner id (expenses.user_id), for callers that only hold the id
+    List<Expense> findByUserId(Long userId);
+    List<Expense> findByUserIdOrderByDateAsc(Long userId);
+    List<Expense> findByUserIdAndDateBetweenOrderByDateAsc(Long userId, LocalDate start, LocalDate end);
+
     /**
      * Sum helper for budgets using LocalDate bounds.
      * Uses inclusive start, exclusive nextMonthStart if you pass nextMonthStart = monthStart.plusMonths(1)
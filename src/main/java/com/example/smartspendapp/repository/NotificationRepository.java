@@ -1,15 +1,109 @@
 package com.example.smartspendapp.repository;
 
+import com.example.smartspendapp.dto.NotificationDto;
 import com.example.smartspendapp.model.Notification;
-import com.example.smartspendapp.model.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
-import java.util.Optional;
 
 public interface NotificationRepository extends JpaRepository<Notification, Long> {
-    List<Notification> findByUserOrderByCreatedAtDesc(User user);
-    List<Notification> findByUserAndReadFlagFalseOrderByCreatedAtDesc(User user);
 
-    Optional<Notification> findFirstByUserAndTitleAndBodyOrderByCreatedAtDesc(User user, String title, String body);
+    /** Constructor expression shared by the list queries; n.user.id reads the FK column, no join. */
+    String DTO = "new com.example.smartspendapp.dto.NotificationDto(n.id, n.title, n.body, n.readFlag, n.createdAt, n.coalescedCount)";
+
+    /**
+     * Newest notifications first; first page of the keyset pagination.
+     */
+    @Query("SELECT " + DTO + " FROM Notification n WHERE n.user.id = :userId ORDER BY n.createdAt DESC, n.id DESC")
+    List<NotificationDto> findLatestForUser(@Param("userId") Long userId, Pageable page);
+
+    /**
+     * Next keyset page: notifications strictly older than the (createdAt, id) cursor.
+     */
+    @Query("SELECT " + DTO + " FROM Notification n WHERE n.user.id = :userId " +
+           "AND (n.createdAt < :createdAt OR (n.createdAt = :createdAt AND n.id < :id)) " +
+           "ORDER BY n.createdAt DESC, n.id DESC")
+    List<NotificationDto> findForUserBefore(@Param("userId") Long userId,
+                                            @Param("createdAt") Instant createdAt,
+                                            @Param("id") Long id,
+                                            Pageable page);
+
+    @Query("SELECT " + DTO + " FROM Notification n WHERE n.user.id = :userId AND n.readFlag = false " +
+           "ORDER BY n.createdAt DESC, n.id DESC")
+    List<NotificationDto> findUnreadForUser(@Param("userId") Long userId);
+
+    /**
+     * Notifications created after the given id, oldest first; reconnect replay when the in-memory buffer cannot answer.
+     */
+    @Query("SELECT " + DTO + " FROM Notification n WHERE n.user.id = :userId AND n.id > :afterId ORDER BY n.id ASC")
+    List<NotificationDto> findForUserAfter(@Param("userId") Long userId, @Param("afterId") Long afterId, Pageable page);
+
+    /** The ids among {@code ids} that still exist and are unread; used to drop deferred alert emails. */
+    @Query("SELECT n.id FROM Notification n WHERE n.id IN :ids AND n.readFlag = false")
+    List<Long> findUnreadIds(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT COUNT(n) FROM Notification n WHERE n.user.id = :userId AND n.readFlag = false")
+    long countUnreadForUser(@Param("userId") Long userId);
+
+    /**
+     * Marks the given notifications read in one statement. Ids that belong to another user
+     * (or are already read) are ignored; returns the number of rows actually changed.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Notification n SET n.readFlag = true " +
+           "WHERE n.user.id = :userId AND n.readFlag = false AND n.id IN :ids")
+    int markReadForUser(@Param("userId") Long userId, @Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Notification n SET n.readFlag = true WHERE n.user.id = :userId AND n.readFlag = false")
+    int markAllReadForUser(@Param("userId") Long userId);
+
+    /**
+     * Closes a coalescing burst: the stored row takes the latest body and the total count. The read
+     * flag is left alone: a row the user already read stays read (the merged update is still pushed
+     * live), so closing a window never raises the unread count again.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Notification n SET n.body = :body, n.coalescedCount = :count WHERE n.id = :id")
+    int updateCoalesced(@Param("id") Long id, @Param("body") String body, @Param("count") int count);
+
+    // ---- retention (native, bounded batches; each call is its own short transaction) ----
+
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM notifications WHERE id IN (" +
+                   "SELECT id FROM notifications WHERE read_flag = true AND created_at < :cutoff LIMIT :batchSize)",
+           nativeQuery = true)
+    int deleteReadOlderThan(@Param("cutoff") Instant cutoff, @Param("batchSize") int batchSize);
+
+    /**
+     * Users with more than maxPerUser notifications; read once per retention run (one pass over the
+     * user_id-leading index) rather than once per batch.
+     */
+    @Query(value = "SELECT user_id FROM notifications GROUP BY user_id HAVING COUNT(*) > :maxPerUser",
+           nativeQuery = true)
+    List<Long> findUserIdsOverCap(@Param("maxPerUser") int maxPerUser);
+
+    /**
+     * Deletes up to batchSize of one user's notifications beyond their newest maxPerUser. Walks
+     * idx_notifications_user_created_id backwards, so the cost is about maxPerUser + batchSize entries.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM notifications WHERE id IN (" +
+                   "SELECT id FROM notifications WHERE user_id = :userId " +
+                   "ORDER BY created_at DESC, id DESC LIMIT :batchSize OFFSET :maxPerUser)",
+           nativeQuery = true)
+    int deleteOverCapForUser(@Param("userId") Long userId, @Param("maxPerUser") int maxPerUser,
+                             @Param("batchSize") int batchSize);
 }
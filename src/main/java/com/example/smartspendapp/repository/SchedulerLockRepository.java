@@ -0,0 +1,44 @@
+package com.example.smartspendapp.repository;
+
+import com.example.smartspendapp.model.SchedulerLock;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+public interface SchedulerLockRepository extends JpaRepository<SchedulerLock, String> {
+
+    /**
+     * Conditional take-over: succeeds (returns 1) only if the lease has expired or is already ours.
+     * Row-level locking in the UPDATE makes this safe when several nodes race for the same name.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE SchedulerLock l SET l.owner = :owner, l.lockedUntil = :until, l.lockedAt = :now, l.heartbeatAt = :now " +
+           "WHERE l.name = :name AND (l.lockedUntil <= :now OR l.owner = :owner)")
+    int tryAcquire(@Param("name") String name,
+                   @Param("owner") String owner,
+                   @Param("now") Instant now,
+                   @Param("until") Instant until);
+
+    /** Heartbeat: pushes the expiry forward while the owner is still working. */
+    @Modifying
+    @Transactional
+    @Query("UPDATE SchedulerLock l SET l.lockedUntil = :until, l.heartbeatAt = :now " +
+           "WHERE l.name = :name AND l.owner = :owner AND l.lockedUntil > :now")
+    int extend(@Param("name") String name,
+               @Param("owner") String owner,
+               @Param("now") Instant now,
+               @Param("until") Instant until);
+
+    /** Release by moving the expiry to {@code until} (now, or later to enforce a minimum hold). */
+    @Modifying
+    @Transactional
+    @Query("UPDATE SchedulerLock l SET l.lockedUntil = :until WHERE l.name = :name AND l.owner = :owner")
+    int release(@Param("name") String name,
+                @Param("owner") String owner,
+                @Param("until") Instant until);
+}
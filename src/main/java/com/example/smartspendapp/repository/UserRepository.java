@@ -3,7 +3,11 @@ package com.example.smartspendapp.repository;
 import com.example.smartspendapp.model.User;
 import java.util.Optional;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
@@ -11,4 +15,10 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByUsername(String username);   // <--- add this
     boolean existsByEmail(String email);
     boolean existsByUsername(String username);
+
+    // stores a re-encoded hash without loading the user (hash upgrade on login)
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.password = :password WHERE u.email = :email")
+    int updatePasswordByEmail(@Param("email") String email, @Param("password") String password);
 }
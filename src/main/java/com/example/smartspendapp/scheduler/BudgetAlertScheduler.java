@@ -1,101 +1,396 @@
 package com.example.smartspendapp.scheduler;
 
-import com.example.smartspendapp.model.Budget;
-import com.example.smartspendapp.model.User;
+import com.example.smartspendapp.dto.BudgetAlertCandidate;
+import com.example.smartspendapp.model.BudgetAlertLevel;
+import com.example.smartspendapp.model.BudgetAlertState;
+import com.example.smartspendapp.model.BudgetDigestEntry;
+import com.example.smartspendapp.model.Notification;
+import com.example.smartspendapp.repository.BudgetAlertStateRepository;
+import com.example.smartspendapp.repository.BudgetDigestEntryRepository;
 import com.example.smartspendapp.repository.BudgetRepository;
+import com.example.smartspendapp.repository.UserRepository;
 import com.example.smartspendapp.service.EmailService;
 import com.example.smartspendapp.service.NotificationService;
+import com.example.smartspendapp.service.PresenceRegistry;
+import com.example.smartspendapp.service.SchedulerLockService;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Component
 public class BudgetAlertScheduler {
 
     private final BudgetRepository budgetRepository;
+    private final BudgetAlertStateRepository alertStateRepository;
+    private final BudgetDigestEntryRepository digestRepository;
+    private final UserRepository userRepository;
     private final NotificationService notificationService;
     private final EmailService emailService;
+    private final SchedulerLockService lockService;
+    private final PresenceRegistry presence;
     private final Logger log = LoggerFactory.getLogger(BudgetAlertScheduler.class);
 
     // thresholds as BigDecimal (recommended)
     private static final BigDecimal NEAR_THRESHOLD = new BigDecimal("0.9"); // 90%
     private static final BigDecimal OVER_THRESHOLD = new BigDecimal("1.0"); // 100%
 
+    // cluster leases, one per (slice, shard) bucket: a crashed node blocks its bucket for at most
+    // LOCK_AT_MOST; LOCK_AT_LEAST stops late-firing nodes from repeating the same minute's slice
+    private static final String LOCK_PREFIX = "budget-alerts:bucket-";
+    private static final Duration LOCK_AT_MOST = Duration.ofMinutes(10);
+    private static final Duration LOCK_AT_LEAST = Duration.ofSeconds(30);
+
+    // number of budgets read per query; memory use is bounded by this, not by table size
+    @Value("${app.budget-alerts.page-size:500}")
+    private int pageSize = 500;
+
+    // time slices per evaluation cycle (one per minute); each user is evaluated once every `slices` minutes
+    private final int slices;
+
+    // user-id hash shards within a slice; each shard is leased and processed independently
+    private final int shards;
+
+    // worker threads per node processing shards concurrently
+    private final int parallelism;
+
+    private final ExecutorService workers;
+
+    // presence-aware email: skip (or defer) the SMTP email while the user is live in the app
+    @Value("${app.presence.skip-email-when-online:true}")
+    private boolean skipEmailWhenOnline = true;
+
+    @Value("${app.presence.online-email-delay-ms:0}")
+    private long onlineEmailDelayMs = 0;
+
+    private final AtomicReference<RunStats> lastRun = new AtomicReference<>();
+
     public BudgetAlertScheduler(BudgetRepository budgetRepository,
+                                BudgetAlertStateRepository alertStateRepository,
+                                BudgetDigestEntryRepository digestRepository,
+                                UserRepository userRepository,
                                 NotificationService notificationService,
-                                EmailService emailService) {
+                                EmailService emailService,
+                                SchedulerLockService lockService,
+                                PresenceRegistry presence,
+                                @Value("${app.budget-alerts.slices:60}") int slices,
+                                @Value("${app.budget-alerts.shards:8}") int shards,
+                                @Value("${app.budget-alerts.parallelism:4}") int parallelism) {
         this.budgetRepository = budgetRepository;
+        this.alertStateRepository = alertStateRepository;
+        this.digestRepository = digestRepository;
+        this.userRepository = userRepository;
         this.notificationService = notificationService;
         this.emailService = emailService;
+        this.lockService = lockService;
+        this.presence = presence;
+        this.slices = Math.max(1, slices);
+        this.shards = Math.max(1, shards);
+        this.parallelism = Math.max(1, parallelism);
+
+        AtomicInteger threadNo = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(this.parallelism, r -> {
+            Thread t = new Thread(r, "budget-alerts-" + threadNo.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdownNow();
     }
 
     /**
-     * 🔁 Runs every hour (at minute 0)
-     * You can change the cron if you want (e.g., every 10 mins for testing).
+     * 🔁 Runs every minute and evaluates one rolling slice of users.
+     *
+     * Every user has a fixed bucket = user_id % (slices * shards). The bucket's slice
+     * (bucket % slices) is the minute of the cycle in which that user is evaluated, so with the
+     * default 60 slices each user is still checked once an hour, but the work (and the DB/SMTP
+     * load) is spread evenly over the hour instead of spiking at minute 0.
+     *
+     * Budgets are read in keyset pages of current-month candidates (user email and spend
+     * come back in the same row), so a run costs one query per page instead of a full
+     * table scan plus one user lookup per budget.
+     *
+     * Alerts are only sent when a budget escalates (none -> near -> exceeded); the level already
+     * delivered is kept in budget_alert_state and loaded with one lookup per page.
+     *
+     * Within a slice, the app.budget-alerts.shards buckets are processed by a pool of
+     * app.budget-alerts.parallelism threads. Each bucket has its own lease, so with several
+     * instances the work is spread across nodes, and a failing shard does not stop the others.
+     * The scheduler thread only submits the work, so a slow slice never delays the next minute.
      */
-    @Scheduled(cron = "0 0 * * * *")
+    @Scheduled(cron = "0 * * * * *")
     public void checkBudgets() {
-        log.info("🔍 Running BudgetAlertScheduler check...");
+        long started = System.nanoTime();
+        int slice = (int) ((System.currentTimeMillis() / 60_000L) % slices);
+        int bucketCount = slices * shards;
 
-        List<Budget> budgets = budgetRepository.findAll();
         LocalDate currentMonth = LocalDate.now().withDayOfMonth(1);
+        List<CompletableFuture<ShardResult>> futures = new ArrayList<>();
+        for (int shard = 0; shard < shards; shard++) {
+            final int bucket = slice + shard * slices;
+            futures.add(CompletableFuture.supplyAsync(() -> runShard(bucket, bucketCount, currentMonth), workers));
+        }
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).whenComplete((ignored, err) -> {
+            RunStats stats = new RunStats();
+            stats.slice = slice;
+            for (CompletableFuture<ShardResult> f : futures) {
+                // runShard catches everything, so only executor failures end up here
+                if (f.isCompletedExceptionally()) stats.shardsFailed++;
+                else stats.add(f.join());
+            }
+            stats.durationMs = Duration.ofNanos(System.nanoTime() - started).toMillis();
+            lastRun.set(stats);
+
+            if (stats.budgetsEvaluated > 0 || stats.shardsFailed > 0) {
+                log.info("✅ BudgetAlertScheduler slice completed: {}", stats);
+            } else {
+                log.debug("BudgetAlertScheduler slice completed: {}", stats);
+            }
+        });
+    }
+
+    /**
+     * Stats of the most recent slice run on this node (null before the first run).
+     */
+    public RunStats getLastRun() {
+        return lastRun.get();
+    }
+
+    private ShardResult runShard(int bucket, int bucketCount, LocalDate currentMonth) {
+        String lockName = LOCK_PREFIX + bucket;
+        ShardResult result = new ShardResult();
+        try {
+            result.ran = lockService.runExclusive(lockName, LOCK_AT_MOST, LOCK_AT_LEAST,
+                    () -> sweepShard(bucket, bucketCount, lockName, currentMonth, result));
+        } catch (Exception e) {
+            result.failed = true;
+            log.error("Budget alert bucket {} failed after {} budgets: {}", bucket, result.evaluated, e.toString(), e);
+        }
+        return result;
+    }
+
+    private void sweepShard(int bucket, int bucketCount, String lockName, LocalDate currentMonth, ShardResult result) {
+        LocalDate nextMonth = currentMonth.plusMonths(1);
+
+        long afterId = 0L;
+        while (true) {
+            List<BudgetAlertCandidate> page = budgetRepository.findAlertCandidates(
+                    currentMonth, nextMonth, afterId, bucketCount, bucket, PageRequest.of(0, pageSize));
+            if (page.isEmpty()) break;
+
+            result.alertsSent += processPage(page);
+            result.evaluated += page.size();
+            afterId = page.get(page.size() - 1).getBudgetId();
+
+            if (page.size() < pageSize) break;
+
+            // heartbeat; stop if the lease expired and another node took over
+            if (!lockService.extend(lockName, LOCK_AT_MOST)) {
+                log.warn("Budget alert bucket {} lost its lease after {} budgets; stopping.", bucket, result.evaluated);
+                return;
+            }
+        }
+    }
+
+    /** Evaluates one page and returns the number of alerts sent. */
+    private int processPage(List<BudgetAlertCandidate> page) {
+        List<Long> budgetIds = page.stream().map(BudgetAlertCandidate::getBudgetId).collect(Collectors.toList());
+        Map<Long, BudgetAlertState> states = alertStateRepository.findAllById(budgetIds).stream()
+                .collect(Collectors.toMap(BudgetAlertState::getBudgetId, Function.identity()));
+
+        List<BudgetAlertState> changed = new ArrayList<>();
+        int sent = 0;
+        for (BudgetAlertCandidate c : page) {
+            BudgetAlertState state = states.get(c.getBudgetId());
+            BudgetAlertLevel previous = state == null ? BudgetAlertLevel.NONE : state.getLevel();
+            BudgetAlertLevel current = levelOf(c);
+            if (current == previous) continue;
+
+            // de-escalation (limit raised, expense removed) just re-arms the budget
+            if (current.compareTo(previous) < 0) {
+                changed.add(record(state, c, current));
+                continue;
+            }
 
-        for (Budget b : budgets) {
-            try {
-                // Ensure it’s a current-month budget
-                if (b.getMonth() == null || !b.getMonth().equals(currentMonth)) continue;
-
-                User user = b.getUser();
-                if (user == null) continue;
-
-                // use BigDecimal for monetary values (null -> ZERO)
-                BigDecimal limit = b.getLimitAmount() != null ? b.getLimitAmount() : BigDecimal.ZERO;
-                BigDecimal spent = b.getSpentAmount() != null ? b.getSpentAmount() : BigDecimal.ZERO;
-
-                // skip invalid/zero limits
-                if (limit.compareTo(BigDecimal.ZERO) <= 0) continue;
-
-                // compute ratio = spent / limit with a scale and rounding mode
-                BigDecimal ratio = spent.divide(limit, 4, RoundingMode.HALF_UP);
-
-                // 💡 Here's where your alert logic goes:
-                if (ratio.compareTo(OVER_THRESHOLD) >= 0) { // Exceeded
-                    notificationService.createNotification(
-                            user,
-                            "Budget exceeded: " + b.getCategory(),
-                            String.format("You exceeded the budget for %s — spent ₹%.2f / ₹%.2f",
-                                    b.getCategory(), spent.doubleValue(), limit.doubleValue())
-                    );
-
-                    // if your EmailService expects doubles, pass as double; otherwise adjust signature accordingly
-                    emailService.sendBudgetAlert(user.getEmail(), b.getCategory(), spent.doubleValue(), limit.doubleValue(), true);
-
-                    log.info("⚠️ Budget exceeded alert sent to {} for category {}", user.getEmail(), b.getCategory());
-                } else if (ratio.compareTo(NEAR_THRESHOLD) >= 0) { // Near limit
-                    notificationService.createNotification(
-                            user,
-                            "Budget nearing limit: " + b.getCategory(),
-                            String.format("You're nearing your budget for %s — spent ₹%.2f / ₹%.2f",
-                                    b.getCategory(), spent.doubleValue(), limit.doubleValue())
-                    );
-
-                    emailService.sendBudgetAlert(user.getEmail(), b.getCategory(), spent.doubleValue(), limit.doubleValue(), false);
-
-                    log.info("⚠️ Budget nearing limit alert sent to {} for category {}", user.getEmail(), b.getCategory());
-                }
-
-            } catch (Exception e) {
-                // log full stacktrace to help debugging
-                log.error("Error processing budget {}: {}", b.getId(), e.toString(), e);
+            // escalation -> alert
+            Notification notification = notify(c, current);
+            if (notification == null) continue;
+            // the in-app alert is stored: record the level before anything else can fail, so the
+            // next run does not create it again. The email has its own retries in the outbox.
+            alertStateRepository.save(record(state, c, current));
+            sent++;
+            sendEmail(c, notification, current);
+        }
+
+        if (!changed.isEmpty()) {
+            alertStateRepository.saveAll(changed);
+        }
+        return sent;
+    }
+
+    private static BudgetAlertState record(BudgetAlertState state, BudgetAlertCandidate c, BudgetAlertLevel level) {
+        if (state == null) {
+            return new BudgetAlertState(c.getBudgetId(), level, Instant.now());
+        }
+        state.setLevel(level);
+        state.setSentAt(Instant.now());
+        return state;
+    }
+
+    private BudgetAlertLevel levelOf(BudgetAlertCandidate c) {
+        // compute ratio = spent / limit with a scale and rounding mode
+        BigDecimal ratio = c.getSpentAmount().divide(c.getLimitAmount(), 4, RoundingMode.HALF_UP);
+        if (ratio.compareTo(OVER_THRESHOLD) >= 0) return BudgetAlertLevel.EXCEEDED;
+        if (ratio.compareTo(NEAR_THRESHOLD) >= 0) return BudgetAlertLevel.NEAR;
+        return BudgetAlertLevel.NONE;
+    }
+
+    /**
+     * Creates the in-app notification for the new level. Returns null if that failed, so the level
+     * is not recorded and the next run retries.
+     */
+    private Notification notify(BudgetAlertCandidate c, BudgetAlertLevel level) {
+        try {
+            BigDecimal limit = c.getLimitAmount();
+            BigDecimal spent = c.getSpentAmount();
+
+            if (level == BudgetAlertLevel.EXCEEDED) {
+                return notificationService.createNotification(
+                        c.getUserId(),
+                        c.getEmail(),
+                        "Budget exceeded: " + c.getCategory(),
+                        String.format("You exceeded the budget for %s — spent ₹%.2f / ₹%.2f",
+                                c.getCategory(), spent.doubleValue(), limit.doubleValue())
+                );
             }
+            return notificationService.createNotification(
+                    c.getUserId(),
+                    c.getEmail(),
+                    "Budget nearing limit: " + c.getCategory(),
+                    String.format("You're nearing your budget for %s — spent ₹%.2f / ₹%.2f",
+                            c.getCategory(), spent.doubleValue(), limit.doubleValue())
+            );
+        } catch (Exception e) {
+            // log full stacktrace to help debugging
+            log.error("Error processing budget {}: {}", c.getBudgetId(), e.toString(), e);
+            return null;
         }
+    }
 
-        log.info("✅ BudgetAlertScheduler run completed.");
+    /**
+     * Queues the email for an alert whose level is already recorded. A failure here is logged and
+     * not retried by the sweep, which would repeat the in-app alert; once queued, delivery retries
+     * happen in the outbox.
+     *
+     * Users who opted into the daily digest get no email now; the alert is stored for
+     * BudgetDigestJob instead. For everyone else the email is skipped while they are live on this
+     * node (STOMP or SSE session) when app.presence.skip-email-when-online is set, or, with
+     * app.presence.online-email-delay-ms > 0, sent after that delay only if the notification is
+     * still unread by then.
+     */
+    private void sendEmail(BudgetAlertCandidate c, Notification notification, BudgetAlertLevel level) {
+        boolean exceeded = level == BudgetAlertLevel.EXCEEDED;
+        String delivery;
+        try {
+            delivery = deliverEmail(c, notification, exceeded);
+        } catch (Exception e) {
+            log.error("Budget alert email for budget {} to {} failed: {}", c.getBudgetId(), c.getEmail(), e.toString(), e);
+            delivery = "failed";
+        }
+
+        if (exceeded) {
+            log.info("⚠️ Budget exceeded alert sent to {} for category {} (email: {})", c.getEmail(), c.getCategory(), delivery);
+        } else {
+            log.info("⚠️ Budget nearing limit alert sent to {} for category {} (email: {})", c.getEmail(), c.getCategory(), delivery);
+        }
+    }
+
+    private String deliverEmail(BudgetAlertCandidate c, Notification notification, boolean exceeded) {
+        double spent = c.getSpentAmount().doubleValue();
+        double limit = c.getLimitAmount().doubleValue();
+
+        if (c.isDigest()) {
+            digestRepository.save(new BudgetDigestEntry(userRepository.getReferenceById(c.getUserId()),
+                    c.getCategory(), c.getMonth(), exceeded, c.getSpentAmount(), c.getLimitAmount()));
+            return "held for daily digest";
+        }
+        if (!skipEmailWhenOnline || !presence.isOnline(c.getEmail())) {
+            emailService.sendBudgetAlert(c.getEmail(), c.getCategory(), spent, limit, exceeded);
+            return "sent";
+        }
+        if (onlineEmailDelayMs <= 0 || notification == null || notification.getId() == null) {
+            return "skipped, user online";
+        }
+
+        // an outbox row due after the delay: survives a restart, and is dropped if read in-app by then
+        emailService.sendBudgetAlertIfUnread(c.getEmail(), c.getCategory(), spent, limit, exceeded,
+                notification.getId(), Duration.ofMillis(onlineEmailDelayMs));
+        return "deferred " + onlineEmailDelayMs + " ms, user online";
+    }
+
+    private static final class ShardResult {
+        boolean ran;
+        boolean failed;
+        int evaluated;
+        int alertsSent;
+    }
+
+    /**
+     * Summary of one slice run on this node: shards processed/skipped (leased elsewhere)/failed,
+     * budgets evaluated, alerts sent and wall-clock duration.
+     */
+    public static final class RunStats {
+        private int slice;
+        private int shardsRun;
+        private int shardsSkipped;
+        private int shardsFailed;
+        private long budgetsEvaluated;
+        private long alertsSent;
+        private long durationMs;
+
+        private void add(ShardResult r) {
+            if (r.failed) shardsFailed++;
+            else if (r.ran) shardsRun++;
+            else shardsSkipped++;
+            budgetsEvaluated += r.evaluated;
+            alertsSent += r.alertsSent;
+        }
+
+        public int getSlice() { return slice; }
+        public int getShardsRun() { return shardsRun; }
+        public int getShardsSkipped() { return shardsSkipped; }
+        public int getShardsFailed() { return shardsFailed; }
+        public long getBudgetsEvaluated() { return budgetsEvaluated; }
+        public long getAlertsSent() { return alertsSent; }
+        public long getDurationMs() { return durationMs; }
+
+        @Override
+        public String toString() {
+            return "slice=" + slice + ", durationMs=" + durationMs + ", budgetsEvaluated=" + budgetsEvaluated + ", alertsSent=" + alertsSent
+                    + ", shardsRun=" + shardsRun + ", shardsSkipped=" + shardsSkipped + ", shardsFailed=" + shardsFailed;
+        }
     }
 }
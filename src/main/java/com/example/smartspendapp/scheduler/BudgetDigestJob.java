@@ -0,0 +1,131 @@
+package com.example.smartspendapp.scheduler;
+
+import com.example.smartspendapp.dto.BudgetDigestLine;
+import com.example.smartspendapp.repository.BudgetDigestEntryRepository;
+import com.example.smartspendapp.service.EmailService;
+import com.example.smartspendapp.service.SchedulerLockService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+@Component
+public class BudgetDigestJob {
+
+    private final BudgetDigestEntryRepository digestRepository;
+    private final EmailService emailService;
+    private final SchedulerLockService lockService;
+    private final TransactionTemplate tx;
+    private final Logger log = LoggerFactory.getLogger(BudgetDigestJob.class);
+
+    private static final String LOCK_NAME = "budget-digest";
+    private static final Duration LOCK_AT_MOST = Duration.ofMinutes(30);
+    private static final Duration LOCK_AT_LEAST = Duration.ofMinutes(1);
+
+    // users per transaction: their digest emails are queued and their entries deleted together
+    private final int usersPerTransaction;
+
+    private final AtomicReference<RunStats> lastRun = new AtomicReference<>();
+
+    public BudgetDigestJob(BudgetDigestEntryRepository digestRepository,
+                           EmailService emailService,
+                           SchedulerLockService lockService,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${app.budget-digest.users-per-transaction:500}") int usersPerTransaction) {
+        this.digestRepository = digestRepository;
+        this.emailService = emailService;
+        this.lockService = lockService;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.usersPerTransaction = Math.max(1, usersPerTransaction);
+    }
+
+    /**
+     * 📬 Daily budget digest for users who opted in, run by one node under a lease.
+     *
+     * One aggregate query returns a line per (user, category, month) for everything collected since the
+     * last run. The lines are cut into one digest email per user. For each chunk of users the
+     * emails are queued in the outbox and the entries deleted in the same transaction, so a crash
+     * mid-run neither loses a digest nor sends it twice.
+     */
+    @Scheduled(cron = "${app.budget-digest.cron:0 0 8 * * *}")
+    public void sendDigests() {
+        boolean ran = lockService.runExclusive(LOCK_NAME, LOCK_AT_MOST, LOCK_AT_LEAST, () -> {
+            RunStats stats = runDigest(Instant.now());
+            lastRun.set(stats);
+            log.info("📬 Budget digest completed: {}", stats);
+        });
+        if (!ran) {
+            log.debug("Budget digest skipped; another instance holds the lease.");
+        }
+    }
+
+    /**
+     * Stats of the most recent digest run on this node (null before the first run).
+     */
+    public RunStats getLastRun() {
+        return lastRun.get();
+    }
+
+    RunStats runDigest(Instant cutoff) {
+        long started = System.nanoTime();
+        RunStats stats = new RunStats();
+        try {
+            Map<Long, List<BudgetDigestLine>> byUser = new LinkedHashMap<>();
+            for (BudgetDigestLine line : digestRepository.findDigestLines(cutoff)) {
+                byUser.computeIfAbsent(line.getUserId(), id -> new ArrayList<>()).add(line);
+                stats.alerts += line.getAlerts();
+            }
+
+            List<Long> userIds = new ArrayList<>(byUser.keySet());
+            for (int i = 0; i < userIds.size(); i += usersPerTransaction) {
+                List<Long> chunk = userIds.subList(i, Math.min(i + usersPerTransaction, userIds.size()));
+                tx.executeWithoutResult(status -> {
+                    for (Long userId : chunk) {
+                        List<BudgetDigestLine> lines = byUser.get(userId);
+                        emailService.sendBudgetDigest(lines.get(0).getEmail(), lines);
+                    }
+                    digestRepository.deleteForUsersBefore(chunk, cutoff);
+                });
+                stats.digestsSent += chunk.size();
+                // heartbeat; stop if the lease expired and another node took over
+                if (!lockService.extend(LOCK_NAME, LOCK_AT_MOST)) {
+                    throw new IllegalStateException("lost lease '" + LOCK_NAME + "'");
+                }
+            }
+        } catch (Exception e) {
+            stats.failed = true;
+            log.error("Budget digest failed after {} digests: {}", stats.digestsSent, e.toString(), e);
+        }
+        stats.durationMs = Duration.ofNanos(System.nanoTime() - started).toMillis();
+        return stats;
+    }
+
+    public static final class RunStats {
+        private long digestsSent;
+        private long alerts;
+        private boolean failed;
+        private long durationMs;
+
+        public long getDigestsSent() { return digestsSent; }
+        public long getAlerts() { return alerts; }
+        public boolean isFailed() { return failed; }
+        public long getDurationMs() { return durationMs; }
+
+        @Override
+        public String toString() {
+            return "digestsSent=" + digestsSent + ", alertsSummarised=" + alerts + ", failed=" + failed
+                    + ", durationMs=" + durationMs;
+        }
+    }
+}
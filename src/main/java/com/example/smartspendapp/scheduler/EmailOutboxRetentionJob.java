@@ -0,0 +1,144 @@
+package com.example.smartspendapp.scheduler;
+
+import com.example.smartspendapp.model.EmailStatus;
+import com.example.smartspendapp.repository.EmailOutboxRepository;
+import com.example.smartspendapp.service.SchedulerLockService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicReference;
+
+@Component
+public class EmailOutboxRetentionJob {
+
+    private final EmailOutboxRepository outboxRepository;
+    private final SchedulerLockService lockService;
+    private final Logger log = LoggerFactory.getLogger(EmailOutboxRetentionJob.class);
+
+    private static final String LOCK_NAME = "email-outbox-retention";
+    private static final Duration LOCK_AT_MOST = Duration.ofMinutes(30);
+    private static final Duration LOCK_AT_LEAST = Duration.ofMinutes(1);
+
+    // SENT rows older than this are deleted; they still carry OTPs and reset links (0 disables the rule)
+    private final int sentRetentionDays;
+
+    // DEAD rows are kept longer for troubleshooting (0 disables the rule)
+    private final int deadRetentionDays;
+
+    // rows per DELETE statement; keeps row locks and WAL per transaction bounded
+    private final int batchSize;
+
+    // pause between batches so replication and autovacuum can keep up
+    private final long pauseMs;
+
+    private final AtomicReference<RunStats> lastRun = new AtomicReference<>();
+
+    public EmailOutboxRetentionJob(EmailOutboxRepository outboxRepository,
+                                   SchedulerLockService lockService,
+                                   @Value("${app.mail.outbox.retention.sent-days:7}") int sentRetentionDays,
+                                   @Value("${app.mail.outbox.retention.dead-days:30}") int deadRetentionDays,
+                                   @Value("${app.mail.outbox.retention.batch-size:5000}") int batchSize,
+                                   @Value("${app.mail.outbox.retention.pause-ms:200}") long pauseMs) {
+        this.outboxRepository = outboxRepository;
+        this.lockService = lockService;
+        this.sentRetentionDays = Math.max(0, sentRetentionDays);
+        this.deadRetentionDays = Math.max(0, deadRetentionDays);
+        this.batchSize = Math.max(1, batchSize);
+        this.pauseMs = Math.max(0, pauseMs);
+    }
+
+    /**
+     * 🧹 Nightly purge of finished outbox rows, run by one node under a lease.
+     *
+     * PENDING and SENDING rows are never touched. SENT and DEAD rows are deleted by age in batches
+     * of app.mail.outbox.retention.batch-size (DELETE ... WHERE id IN (SELECT ... LIMIT n)), each in
+     * its own short transaction with a pause in between, same as the notification retention.
+     */
+    @Scheduled(cron = "${app.mail.outbox.retention.cron:0 45 3 * * *}")
+    public void purge() {
+        boolean ran = lockService.runExclusive(LOCK_NAME, LOCK_AT_MOST, LOCK_AT_LEAST, () -> {
+            RunStats stats = runPurge();
+            lastRun.set(stats);
+            log.info("🧹 Email outbox retention completed: {}", stats);
+        });
+        if (!ran) {
+            log.debug("Email outbox retention skipped; another instance holds the lease.");
+        }
+    }
+
+    /**
+     * Stats of the most recent purge run on this node (null before the first run).
+     */
+    public RunStats getLastRun() {
+        return lastRun.get();
+    }
+
+    RunStats runPurge() {
+        long started = System.nanoTime();
+        RunStats stats = new RunStats();
+        try {
+            if (sentRetentionDays > 0) {
+                stats.sentPurged = purgeInBatches(EmailStatus.SENT, sentRetentionDays, stats);
+            }
+            if (deadRetentionDays > 0) {
+                stats.deadPurged = purgeInBatches(EmailStatus.DEAD, deadRetentionDays, stats);
+            }
+        } catch (Exception e) {
+            stats.failed = true;
+            log.error("Email outbox retention failed after {} rows: {}", stats.getRowsPurged(), e.toString(), e);
+        }
+        stats.durationMs = Duration.ofNanos(System.nanoTime() - started).toMillis();
+        return stats;
+    }
+
+    private long purgeInBatches(EmailStatus status, int days, RunStats stats) {
+        Instant cutoff = Instant.now().minus(Duration.ofDays(days));
+        long purged = 0;
+        while (true) {
+            int deleted = outboxRepository.deleteFinishedBefore(status.name(), cutoff, batchSize);
+            purged += deleted;
+            stats.batches++;
+            if (deleted < batchSize) {
+                return purged;
+            }
+            // heartbeat; stop if the lease expired and another node took over
+            if (!lockService.extend(LOCK_NAME, LOCK_AT_MOST)) {
+                throw new IllegalStateException("lost lease '" + LOCK_NAME + "'");
+            }
+            if (pauseMs > 0) {
+                try {
+                    Thread.sleep(pauseMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return purged;
+                }
+            }
+        }
+    }
+
+    public static final class RunStats {
+        private long sentPurged;
+        private long deadPurged;
+        private int batches;
+        private boolean failed;
+        private long durationMs;
+
+        public long getSentPurged() { return sentPurged; }
+        public long getDeadPurged() { return deadPurged; }
+        public long getRowsPurged() { return sentPurged + deadPurged; }
+        public int getBatches() { return batches; }
+        public boolean isFailed() { return failed; }
+        public long getDurationMs() { return durationMs; }
+
+        @Override
+        public String toString() {
+            return "rowsPurged=" + getRowsPurged() + ", sentPurged=" + sentPurged + ", deadPurged=" + deadPurged
+                    + ", batches=" + batches + ", failed=" + failed + ", durationMs=" + durationMs;
+        }
+    }
+}
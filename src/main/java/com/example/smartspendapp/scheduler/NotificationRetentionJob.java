@@ -0,0 +1,167 @@
+package com.example.smartspendapp.scheduler;
+
+import com.example.smartspendapp.repository.NotificationRepository;
+import com.example.smartspendapp.service.SchedulerLockService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntSupplier;
+
+@Component
+public class NotificationRetentionJob {
+
+    private final NotificationRepository notificationRepository;
+    private final SchedulerLockService lockService;
+    private final Logger log = LoggerFactory.getLogger(NotificationRetentionJob.class);
+
+    private static final String LOCK_NAME = "notification-retention";
+    private static final Duration LOCK_AT_MOST = Duration.ofMinutes(30);
+    private static final Duration LOCK_AT_LEAST = Duration.ofMinutes(1);
+
+    // read notifications older than this are deleted (0 disables the rule)
+    private final int readRetentionDays;
+
+    // keep at most this many notifications per user, newest first (0 disables the rule)
+    private final int maxPerUser;
+
+    // rows per DELETE statement; keeps row locks and WAL per transaction bounded
+    private final int batchSize;
+
+    // pause between batches so replication and autovacuum can keep up
+    private final long pauseMs;
+
+    private final AtomicReference<RunStats> lastRun = new AtomicReference<>();
+    private long leaseExtendedAt;
+
+    public NotificationRetentionJob(NotificationRepository notificationRepository,
+                                    SchedulerLockService lockService,
+                                    @Value("${app.notifications.retention.read-days:90}") int readRetentionDays,
+                                    @Value("${app.notifications.retention.max-per-user:0}") int maxPerUser,
+                                    @Value("${app.notifications.retention.batch-size:5000}") int batchSize,
+                                    @Value("${app.notifications.retention.pause-ms:200}") long pauseMs) {
+        this.notificationRepository = notificationRepository;
+        this.lockService = lockService;
+        this.readRetentionDays = Math.max(0, readRetentionDays);
+        this.maxPerUser = Math.max(0, maxPerUser);
+        this.batchSize = Math.max(1, batchSize);
+        this.pauseMs = Math.max(0, pauseMs);
+    }
+
+    /**
+     * 🧹 Nightly purge of old notifications, run by one node under a lease.
+     *
+     * Deletes happen in batches of app.notifications.retention.batch-size rows
+     * (DELETE ... WHERE id IN (SELECT ... LIMIT n)), each in its own short transaction,
+     * with a pause in between, so the job never holds long locks or produces a WAL spike.
+     * Both rules delete through an index: read rows by (read_flag, created_at), and the per-user
+     * cap user by user along (user_id, created_at, id) for the users found over the cap at the
+     * start of the run.
+     */
+    @Scheduled(cron = "${app.notifications.retention.cron:0 30 3 * * *}")
+    public void purge() {
+        boolean ran = lockService.runExclusive(LOCK_NAME, LOCK_AT_MOST, LOCK_AT_LEAST, () -> {
+            RunStats stats = runPurge();
+            lastRun.set(stats);
+            log.info("🧹 Notification retention completed: {}", stats);
+        });
+        if (!ran) {
+            log.debug("Notification retention skipped; another instance holds the lease.");
+        }
+    }
+
+    /**
+     * Stats of the most recent purge run on this node (null before the first run).
+     */
+    public RunStats getLastRun() {
+        return lastRun.get();
+    }
+
+    RunStats runPurge() {
+        long started = System.nanoTime();
+        RunStats stats = new RunStats();
+        leaseExtendedAt = System.nanoTime();
+        try {
+            if (readRetentionDays > 0) {
+                Instant cutoff = Instant.now().minus(Duration.ofDays(readRetentionDays));
+                stats.readPurged = purgeInBatches(() -> notificationRepository.deleteReadOlderThan(cutoff, batchSize), stats);
+            }
+            if (maxPerUser > 0) {
+                List<Long> overCap = notificationRepository.findUserIdsOverCap(maxPerUser);
+                stats.usersOverCap = overCap.size();
+                for (Long userId : overCap) {
+                    stats.overCapPurged += purgeInBatches(
+                            () -> notificationRepository.deleteOverCapForUser(userId, maxPerUser, batchSize), stats);
+                    keepLease();
+                }
+            }
+        } catch (Exception e) {
+            stats.failed = true;
+            log.error("Notification retention failed after {} rows: {}", stats.getRowsPurged(), e.toString(), e);
+        }
+        stats.durationMs = Duration.ofNanos(System.nanoTime() - started).toMillis();
+        return stats;
+    }
+
+    private long purgeInBatches(IntSupplier deleteBatch, RunStats stats) {
+        long purged = 0;
+        while (true) {
+            int deleted = deleteBatch.getAsInt();
+            purged += deleted;
+            stats.batches++;
+            if (deleted < batchSize) {
+                return purged;
+            }
+            keepLease();
+            if (pauseMs > 0) {
+                try {
+                    Thread.sleep(pauseMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return purged;
+                }
+            }
+        }
+    }
+
+    // heartbeat (at most once a minute); stop if the lease expired and another node took over
+    private void keepLease() {
+        long now = System.nanoTime();
+        if (now - leaseExtendedAt < LOCK_AT_LEAST.toNanos()) {
+            return;
+        }
+        if (!lockService.extend(LOCK_NAME, LOCK_AT_MOST)) {
+            throw new IllegalStateException("lost lease '" + LOCK_NAME + "'");
+        }
+        leaseExtendedAt = now;
+    }
+
+    public static final class RunStats {
+        private long readPurged;
+        private long overCapPurged;
+        private int usersOverCap;
+        private int batches;
+        private boolean failed;
+        private long durationMs;
+
+        public long getReadPurged() { return readPurged; }
+        public long getOverCapPurged() { return overCapPurged; }
+        public long getRowsPurged() { return readPurged + overCapPurged; }
+        public int getUsersOverCap() { return usersOverCap; }
+        public int getBatches() { return batches; }
+        public boolean isFailed() { return failed; }
+        public long getDurationMs() { return durationMs; }
+
+        @Override
+        public String toString() {
+            return "rowsPurged=" + getRowsPurged() + ", readPurged=" + readPurged + ", overCapPurged=" + overCapPurged
+                    + ", usersOverCap=" + usersOverCap + ", batches=" + batches + ", failed=" + failed + ", durationMs=" + durationMs;
+        }
+    }
+}
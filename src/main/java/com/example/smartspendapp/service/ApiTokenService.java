@@ -0,0 +1,217 @@
+package com.example.smartspendapp.service;
+
+import com.example.smartspendapp.config.AppUserPrincipal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Signed tokens for the stateless API mode (app.api-auth.mode=token).
+ *
+ * A token is base64url(payload) + "." + base64url(HMAC-SHA256(payload)), using only the JDK.
+ * Access tokens carry the user id, email, roles and expiry, so the API filter authenticates a
+ * request from the token alone, without a database read or a session. Refresh tokens live longer
+ * and also carry a fingerprint of the stored password hash. Refreshing loads the user again, so a
+ * password change or a disabled account ends the refresh chain. A stolen access token stays valid
+ * until it expires (access-ttl-seconds), which is why that TTL is short.
+ *
+ * All nodes must share app.api-auth.token.secret. If it is unset, a random per-process key is
+ * used: tokens then stop working after a restart and on other nodes.
+ */
+@Component
+public class ApiTokenService {
+
+    private static final String ACCESS = "a";
+    private static final String REFRESH = "r";
+    private static final Base64.Encoder B64 = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder B64D = Base64.getUrlDecoder();
+
+    private final Logger log = LoggerFactory.getLogger(ApiTokenService.class);
+
+    private final UserDetailsService userDetailsService;
+    private final boolean enabled;
+    private final long accessTtlSeconds;
+    private final long refreshTtlSeconds;
+    private final SecretKeySpec key;
+    // Mac instances are not thread-safe
+    private final ThreadLocal<Mac> mac;
+
+    public ApiTokenService(UserDetailsService userDetailsService,
+                           @Value("${app.api-auth.mode:session}") String mode,
+                           @Value("${app.api-auth.token.secret:}") String secret,
+                           @Value("${app.api-auth.token.access-ttl-seconds:900}") long accessTtlSeconds,
+                           @Value("${app.api-auth.token.refresh-ttl-seconds:1209600}") long refreshTtlSeconds) {
+        this.userDetailsService = userDetailsService;
+        this.enabled = "token".equalsIgnoreCase(mode.trim());
+        this.accessTtlSeconds = Math.max(60, accessTtlSeconds);
+        this.refreshTtlSeconds = Math.max(this.accessTtlSeconds, refreshTtlSeconds);
+
+        byte[] keyBytes;
+        if (secret == null || secret.isBlank()) {
+            keyBytes = new byte[32];
+            new SecureRandom().nextBytes(keyBytes);
+            if (enabled) {
+                log.warn("app.api-auth.token.secret is not set: using a random key. API tokens will not survive a restart "
+                        + "and are not accepted by other nodes. Set a shared secret (32+ bytes) in production!");
+            }
+        } else {
+            keyBytes = secret.getBytes(StandardCharsets.UTF_8);
+            if (enabled && keyBytes.length < 32) {
+                log.warn("app.api-auth.token.secret is shorter than 32 bytes; use a longer secret.");
+            }
+        }
+        this.key = new SecretKeySpec(keyBytes, "HmacSHA256");
+        this.mac = ThreadLocal.withInitial(this::newMac);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * A new access/refresh token pair for a user who just authenticated.
+     */
+    public Tokens issue(Long userId, String email, String passwordHash, Collection<? extends GrantedAuthority> authorities) {
+        long now = Instant.now().getEpochSecond();
+        String roles = authorities == null ? "" : authorities.stream()
+                .map(GrantedAuthority::getAuthority)
+                .collect(Collectors.joining(","));
+        String access = sign(String.join("|", ACCESS, String.valueOf(userId), b64(email), roles,
+                String.valueOf(now + accessTtlSeconds)));
+        String refresh = sign(String.join("|", REFRESH, String.valueOf(userId), b64(email), "",
+                String.valueOf(now + refreshTtlSeconds), fingerprint(passwordHash)));
+        return new Tokens(access, refresh, accessTtlSeconds);
+    }
+
+    /**
+     * The principal in a valid, unexpired access token; empty for anything else.
+     */
+    public Optional<AppUserPrincipal> verifyAccess(String token) {
+        String[] claims = verify(token, ACCESS);
+        if (claims == null) {
+            return Optional.empty();
+        }
+        List<SimpleGrantedAuthority> authorities = new ArrayList<>();
+        for (String role : claims[3].split(",")) {
+            if (!role.isEmpty()) authorities.add(new SimpleGrantedAuthority(role));
+        }
+        String email = unb64(claims[2]);
+        // no password in a token-authenticated principal
+        return Optional.of(new AppUserPrincipal(Long.valueOf(claims[1]), email, email, "", true, authorities));
+    }
+
+    /**
+     * Checks a refresh token against the current user row and issues a new
+     * pair. Empty if the token is invalid or expired, or the user is gone, disabled or has changed the password.
+     */
+    public Optional<Tokens> refresh(String refreshToken) {
+        String[] claims = verify(refreshToken, REFRESH);
+        if (claims == null || claims.length < 6) {
+            return Optional.empty();
+        }
+        // read the current row (not the login cache), so a password change on any node is seen at once
+        UserDetails user;
+        try {
+            user = userDetailsService.loadUserByUsername(unb64(claims[2]));
+        } catch (UsernameNotFoundException ex) {
+            return Optional.empty();
+        }
+        if (!user.isEnabled() || !MessageDigest.isEqual(
+                fingerprint(user.getPassword()).getBytes(StandardCharsets.US_ASCII),
+                claims[5].getBytes(StandardCharsets.US_ASCII))) {
+            return Optional.empty();
+        }
+        Long userId = user instanceof AppUserPrincipal p ? p.getUserId() : Long.valueOf(claims[1]);
+        return Optional.of(issue(userId, user.getUsername(), user.getPassword(), user.getAuthorities()));
+    }
+
+    // payload fields: type|userId|b64(email)|roles|expiresAtEpochSecond[|passwordFingerprint]
+    private String[] verify(String token, String type) {
+        if (token == null) return null;
+        int dot = token.indexOf('.');
+        if (dot <= 0 || dot != token.lastIndexOf('.')) return null;
+        try {
+            byte[] payload = B64D.decode(token.substring(0, dot));
+            byte[] signature = B64D.decode(token.substring(dot + 1));
+            if (!MessageDigest.isEqual(hmac(payload), signature)) return null;
+            String[] claims = new String(payload, StandardCharsets.UTF_8).split("\\|", -1);
+            if (claims.length < 5 || !type.equals(claims[0])) return null;
+            if (Long.parseLong(claims[4]) <= Instant.now().getEpochSecond()) return null;
+            Long.parseLong(claims[1]);
+            return claims;
+        } catch (IllegalArgumentException ex) {
+            // bad base64 or numbers
+            return null;
+        }
+    }
+
+    private String sign(String payload) {
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        return B64.encodeToString(bytes) + "." + B64.encodeToString(hmac(bytes));
+    }
+
+    // first 12 bytes of HMAC(password hash): changes with the password, reveals nothing about it
+    private String fingerprint(String passwordHash) {
+        byte[] h = hmac(("pw:" + (passwordHash == null ? "" : passwordHash)).getBytes(StandardCharsets.UTF_8));
+        return B64.encodeToString(Arrays.copyOf(h, 12));
+    }
+
+    private byte[] hmac(byte[] data) {
+        return mac.get().doFinal(data);
+    }
+
+    private Mac newMac() {
+        try {
+            Mac m = Mac.getInstance("HmacSHA256");
+            m.init(key);
+            return m;
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("HmacSHA256 not available", ex);
+        }
+    }
+
+    private static String b64(String s) {
+        return B64.encodeToString(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String unb64(String s) {
+        return new String(B64D.decode(s), StandardCharsets.UTF_8);
+    }
+
+    public static final class Tokens {
+        private final String accessToken;
+        private final String refreshToken;
+        private final long expiresIn;
+
+        Tokens(String accessToken, String refreshToken, long expiresIn) {
+            this.accessToken = accessToken;
+            this.refreshToken = refreshToken;
+            this.expiresIn = expiresIn;
+        }
+
+        public String getAccessToken() { return accessToken; }
+        public String getRefreshToken() { return refreshToken; }
+        public long getExpiresIn() { return expiresIn; }
+    }
+}
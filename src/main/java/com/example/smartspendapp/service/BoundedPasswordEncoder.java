@@ -0,0 +1,174 @@
+package com.example.smartspendapp.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the (deliberately slow) encode/matches of a delegate encoder on a small fixed pool instead
+ * of on the calling request thread.
+ *
+ * BCrypt is pure CPU work: during a login storm every Tomcat thread would be hashing and nothing
+ * else gets a core. Here at most app.security.password.hash-threads hashes run at once, up to
+ * queue-size more wait, and a caller whose hash does not finish within wait-ms (or that finds the
+ * queue full) gets a {@link PasswordHashingBusyException} (503) right away. upgradeEncoding is
+ * just a prefix/cost check and stays on the caller's thread.
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder {
+
+    private final Logger log = LoggerFactory.getLogger(BoundedPasswordEncoder.class);
+
+    private final PasswordEncoder delegate;
+    private final ThreadPoolExecutor pool;
+    private final long waitMs;
+
+    private final AtomicLong hashed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+    private final AtomicLong totalHashMicros = new AtomicLong();
+    private long lastLoggedHashed;
+    private long lastLoggedRejected;
+
+    public BoundedPasswordEncoder(PasswordEncoder delegate, int threads, int queueSize, long waitMs) {
+        this.delegate = delegate;
+        this.waitMs = Math.max(100, waitMs);
+        int n = Math.max(1, threads);
+        AtomicInteger seq = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(n, n, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(Math.max(1, queueSize)), r -> {
+            Thread t = new Thread(r, "password-hash-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return run(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return run(() -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    /**
+     * An upgrade costs one more encode in the login that triggers it, so it is skipped while
+     * hashes are queueing; the user is upgraded on a later, quieter login.
+     */
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword) && pool.getQueue().isEmpty();
+    }
+
+    private <T> T run(Callable<T> work) {
+        Future<T> future;
+        try {
+            future = pool.submit(() -> {
+                long start = System.nanoTime();
+                try {
+                    return work.call();
+                } finally {
+                    hashed.incrementAndGet();
+                    totalHashMicros.addAndGet((System.nanoTime() - start) / 1000);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            rejected.incrementAndGet();
+            throw new PasswordHashingBusyException("Password hashing queue is full");
+        }
+        try {
+            return future.get(waitMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            // drop it if it has not started yet; a hash already running just finishes unused
+            future.cancel(false);
+            timedOut.incrementAndGet();
+            throw new PasswordHashingBusyException("Password hashing did not complete within " + waitMs + " ms");
+        } catch (InterruptedException ex) {
+            future.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new PasswordHashingBusyException("Interrupted while waiting for password hashing");
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException re) throw re;
+            if (cause instanceof Error err) throw err;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    @Scheduled(fixedDelayString = "${app.security.password.stats-log-ms:60000}")
+    void logStats() {
+        long h = hashed.get();
+        long r = rejected.get() + timedOut.get();
+        if (h == lastLoggedHashed && r == lastLoggedRejected) {
+            return;
+        }
+        lastLoggedHashed = h;
+        lastLoggedRejected = r;
+        if (r > 0) {
+            log.warn("📊 Password hashing: {}", getStats());
+        } else {
+            log.info("📊 Password hashing: {}", getStats());
+        }
+    }
+
+    public Stats getStats() {
+        long h = hashed.get();
+        return new Stats(pool.getMaximumPoolSize(), pool.getActiveCount(), pool.getQueue().size(), h,
+                rejected.get(), timedOut.get(), h == 0 ? 0 : totalHashMicros.get() / h);
+    }
+
+    /**
+     * Counters since start; avgHashMicros is the time one encode/matches took on a pool thread.
+     */
+    public static final class Stats {
+        private final int threads;
+        private final int active;
+        private final int queued;
+        private final long hashed;
+        private final long rejected;
+        private final long timedOut;
+        private final long avgHashMicros;
+
+        Stats(int threads, int active, int queued, long hashed, long rejected, long timedOut, long avgHashMicros) {
+            this.threads = threads;
+            this.active = active;
+            this.queued = queued;
+            this.hashed = hashed;
+            this.rejected = rejected;
+            this.timedOut = timedOut;
+            this.avgHashMicros = avgHashMicros;
+        }
+
+        public int getThreads() { return threads; }
+        public int getActive() { return active; }
+        public int getQueued() { return queued; }
+        public long getHashed() { return hashed; }
+        public long getRejected() { return rejected; }
+        public long getTimedOut() { return timedOut; }
+        public long getAvgHashMicros() { return avgHashMicros; }
+
+        @Override
+        public String toString() {
+            return "threads=" + threads + " active=" + active + " queued=" + queued + " hashed=" + hashed
+                    + " rejected=" + rejected + " timedOut=" + timedOut + " avgHashMicros=" + avgHashMicros;
+        }
+    }
+}
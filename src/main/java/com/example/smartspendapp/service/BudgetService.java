@@ -1,10 +1,8 @@
 package com.example.smartspendapp.service;
 
 import com.example.smartspendapp.model.Budget;
-import com.example.smartspendapp.model.User;
 import com.example.smartspendapp.repository.BudgetRepository;
 import com.example.smartspendapp.repository.ExpenseRepository;
-import com.example.smartspendapp.repository.UserRepository;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -20,14 +18,11 @@ public class BudgetService {
 
     private final BudgetRepository budgetRepository;
     private final ExpenseRepository expenseRepository;
-    private final UserRepository userRepository;
 
     public BudgetService(BudgetRepository budgetRepository,
-                         ExpenseRepository expenseRepository,
-                         UserRepository userRepository) {
+                         ExpenseRepository expenseRepository) {
         this.budgetRepository = budgetRepository;
         this.expenseRepository = expenseRepository;
-        this.userRepository = userRepository;
     }
 
     @Transactional
@@ -37,10 +32,8 @@ public class BudgetService {
 
     @Transactional(readOnly = true)
     public List<Budget> getBudgetsForUser(Long userId) {
-        // ensure user exists
-        User user = userRepository.findById(userId).orElseThrow(() -> new RuntimeException("User not found: " + userId));
-
-        List<Budget> budgets = budgetRepository.findByUser(user);
+        // by owner id: the users row itself is not needed here
+        List<Budget> budgets = budgetRepository.findByUserId(userId);
         if (budgets == null) budgets = Collections.emptyList();
 
         for (Budget b : budgets) {
@@ -0,0 +1,87 @@
+package com.example.smartspendapp.service;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.web.util.matcher.IpAddressMatcher;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * The client address used for per-IP rate limits. Behind a load balancer every request comes from
+ * the proxy, so X-Forwarded-For is read, but only when the connection comes from one of
+ * app.client-ip.trusted-proxies (addresses or CIDR ranges; by default loopback and the private
+ * ranges). The header is walked from the right, skipping trusted hops; the first other address is
+ * the client. Entries a client could have written itself (left of that) are ignored, so a client
+ * cannot pick its own rate-limit bucket. With the list empty, the connection address is used as is.
+ */
+@Component
+public class ClientIpResolver {
+
+    static final String FORWARDED_FOR = "X-Forwarded-For";
+
+    private static final String OCTET = "(25[0-5]|2[0-4]\\d|1\\d\\d|[1-9]?\\d)";
+    private static final Pattern IPV4 = Pattern.compile(OCTET + "(\\." + OCTET + "){3}");
+
+    private final List<IpAddressMatcher> trustedProxies = new ArrayList<>();
+
+    public ClientIpResolver(@Value("${app.client-ip.trusted-proxies:127.0.0.0/8,::1,10.0.0.0/8,172.16.0.0/12,192.168.0.0/16}")
+                            List<String> trustedProxies) {
+        for (String proxy : trustedProxies) {
+            if (!proxy.isBlank()) {
+                this.trustedProxies.add(new IpAddressMatcher(proxy.trim()));
+            }
+        }
+    }
+
+    public String resolve(HttpServletRequest request) {
+        String remote = request.getRemoteAddr();
+        if (!isTrusted(remote)) {
+            return remote;
+        }
+        List<String> hops = new ArrayList<>();
+        Enumeration<String> headers = request.getHeaders(FORWARDED_FOR);
+        for (String header : headers == null ? Collections.<String>emptyList() : Collections.list(headers)) {
+            for (String hop : header.split(",")) {
+                if (!hop.isBlank()) hops.add(hop.trim());
+            }
+        }
+        String client = remote;
+        for (int i = hops.size() - 1; i >= 0; i--) {
+            String hop = hops.get(i);
+            if (!isIpAddress(hop)) {
+                // garbage (or "unknown") in the chain: stop at the last address a trusted proxy vouched for
+                break;
+            }
+            client = hop;
+            if (!isTrusted(hop)) {
+                break;
+            }
+        }
+        return client;
+    }
+
+    private boolean isTrusted(String address) {
+        if (address == null) return false;
+        for (IpAddressMatcher proxy : trustedProxies) {
+            try {
+                if (proxy.matches(address)) return true;
+            } catch (IllegalArgumentException ex) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    // IP literals only: a host name here must never cause a DNS lookup
+    private static boolean isIpAddress(String value) {
+        if (value.indexOf(':') >= 0) {
+            return value.matches("[0-9A-Fa-f:.]+");
+        }
+        return IPV4.matcher(value).matches();
+    }
+}
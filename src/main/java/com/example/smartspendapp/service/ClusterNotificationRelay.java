@@ -0,0 +1,201 @@
+package com.example.smartspendapp.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cluster fan-out for WebSocket notifications over PostgreSQL LISTEN/NOTIFY.
+ *
+ * The simple STOMP broker is per-node, so a notification created on node A would never reach a
+ * browser connected to node B. Every message published on this node is also sent as a compact
+ * JSON envelope with {@code pg_notify}. The publisher calls it after the caller's transaction
+ * has committed (the same rule the local outbox follows), and the NOTIFY runs in a short
+ * transaction of its own, so a failed NOTIFY never affects the caller's work. Each node
+ * keeps one dedicated LISTEN connection (outside the Hikari pool). It reconnects with backoff and
+ * republishes other nodes' envelopes to its local broker through {@link NotificationPublisher}.
+ * Its own envelopes are skipped by origin, and repeated event ids are dropped via a small LRU.
+ *
+ * Enable with app.notifications.cluster.enabled=true.
+ */
+@Component
+@ConditionalOnProperty(name = "app.notifications.cluster.enabled", havingValue = "true")
+public class ClusterNotificationRelay {
+
+    // NOTIFY payloads must stay under 8000 bytes
+    private static final int MAX_PAYLOAD_BYTES = 7900;
+    private static final int SEEN_EVENTS = 10_000;
+
+    private final Logger log = LoggerFactory.getLogger(ClusterNotificationRelay.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate notifyTx;
+    private final DataSourceProperties dataSourceProperties;
+    private final ObjectMapper objectMapper;
+    private final NotificationPublisher publisher;
+    private final String origin;
+    private final String channel;
+    private final int pollMs;
+    private final long maxBackoffMs;
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<String, Boolean> seen = new LinkedHashMap<>(1024, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > SEEN_EVENTS;
+        }
+    };
+
+    private volatile boolean running = true;
+    private Thread listener;
+
+    public ClusterNotificationRelay(JdbcTemplate jdbcTemplate,
+                                    DataSourceProperties dataSourceProperties,
+                                    ObjectMapper objectMapper,
+                                    NotificationPublisher publisher,
+                                    SchedulerLockService lockService,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${app.notifications.cluster.channel:smartspend_notifications}") String channel,
+                                    @Value("${app.notifications.cluster.poll-ms:10000}") int pollMs,
+                                    @Value("${app.notifications.cluster.max-backoff-ms:30000}") long maxBackoffMs) {
+        if (!channel.matches("[a-z_][a-z0-9_]{0,62}")) {
+            throw new IllegalArgumentException("Invalid LISTEN channel name: " + channel);
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        // own connection and transaction: this runs from afterCommit, where the caller's connection
+        // is still bound but its transaction is already over
+        this.notifyTx = new TransactionTemplate(transactionManager);
+        this.notifyTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.dataSourceProperties = dataSourceProperties;
+        this.objectMapper = objectMapper;
+        this.publisher = publisher;
+        this.origin = lockService.getInstanceId();
+        this.channel = channel;
+        this.pollMs = Math.max(100, pollMs);
+        this.maxBackoffMs = Math.max(1000, maxBackoffMs);
+    }
+
+    @PostConstruct
+    void start() {
+        listener = new Thread(this::listenLoop, "notification-cluster-listener");
+        listener.setDaemon(true);
+        listener.start();
+        log.info("Cluster notification relay started on channel '{}' as node {}", channel, origin);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        running = false;
+        if (listener != null) {
+            listener.interrupt();
+        }
+    }
+
+    /**
+     * Sends the message to the other nodes. Called by {@link NotificationPublisher} for every
+     * publish once the caller's transaction has committed (nothing is sent if it rolls back).
+     */
+    void broadcast(String user, String destination, Object payload) {
+        ObjectNode envelope = objectMapper.createObjectNode();
+        envelope.put("o", origin);
+        envelope.put("e", sequence.incrementAndGet());
+        if (user != null) envelope.put("u", user);
+        envelope.put("d", destination);
+        envelope.set("p", objectMapper.valueToTree(payload));
+
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(envelope);
+        } catch (Exception ex) {
+            log.error("Could not serialise cluster notification for {}: {}", destination, ex.toString());
+            return;
+        }
+        if (json.getBytes(StandardCharsets.UTF_8).length > MAX_PAYLOAD_BYTES) {
+            log.warn("Cluster notification for {} exceeds the NOTIFY size limit; delivered on this node only", destination);
+            return;
+        }
+        try {
+            notifyTx.executeWithoutResult(status -> jdbcTemplate.query("SELECT pg_notify(?, ?)", rs -> null, channel, json));
+        } catch (Exception ex) {
+            log.error("pg_notify failed for {}; delivered on this node only: {}", destination, ex.toString());
+        }
+    }
+
+    private void listenLoop() {
+        long backoffMs = 1000;
+        while (running) {
+            try (Connection conn = DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                    dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword());
+                 Statement st = conn.createStatement()) {
+
+                PGConnection pg = conn.unwrap(PGConnection.class);
+                st.execute("LISTEN " + channel);
+                log.info("Listening for cluster notifications on '{}'", channel);
+                backoffMs = 1000;
+
+                while (running) {
+                    PGNotification[] notifications = pg.getNotifications(pollMs);
+                    if (notifications == null || notifications.length == 0) {
+                        // idle: a round trip detects half-open connections that getNotifications would not
+                        st.execute("SELECT 1");
+                        continue;
+                    }
+                    for (PGNotification n : notifications) {
+                        handle(n.getParameter());
+                    }
+                }
+            } catch (SQLException ex) {
+                if (!running) break;
+                log.warn("Cluster notification listener lost its connection ({}); reconnecting in {} ms", ex.getMessage(), backoffMs);
+                try {
+                    Thread.sleep(backoffMs);
+                } catch (InterruptedException ie) {
+                    if (!running) break;
+                }
+                backoffMs = Math.min(backoffMs * 2, maxBackoffMs);
+            }
+        }
+        log.debug("Cluster notification listener stopped");
+    }
+
+    private void handle(String json) {
+        try {
+            JsonNode envelope = objectMapper.readTree(json);
+            String from = envelope.path("o").asText();
+            if (origin.equals(from)) {
+                return; // already delivered locally by the outbox
+            }
+            if (seen.put(from + ":" + envelope.path("e").asText(), Boolean.TRUE) != null) {
+                return;
+            }
+            String user = envelope.hasNonNull("u") ? envelope.get("u").asText() : null;
+            Object payload = objectMapper.treeToValue(envelope.get("p"), Object.class);
+            publisher.publishLocally(user, envelope.path("d").asText(), payload);
+        } catch (Exception ex) {
+            log.warn("Ignoring malformed cluster notification: {}", ex.toString());
+        }
+    }
+}
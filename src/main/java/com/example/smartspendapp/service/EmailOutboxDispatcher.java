@@ -0,0 +1,406 @@
+package com.example.smartspendapp.service;
+
+import com.example.smartspendapp.model.EmailOutbox;
+import com.example.smartspendapp.model.EmailStatus;
+import com.example.smartspendapp.repository.EmailOutboxRepository;
+import com.example.smartspendapp.repository.NotificationRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drains the email_outbox table (filled by {@link EmailService}) to the mail server.
+ *
+ * One poller thread claims due rows with a single conditional UPDATE (SKIP LOCKED, so several
+ * nodes can share the table) and hands them, in batches of app.mail.outbox.batch-size, to a fixed
+ * pool of app.mail.outbox.workers threads. Each batch goes through one
+ * {@code send(SimpleMailMessage...)} call, i.e. one SMTP connection (and TLS handshake) for the
+ * whole batch instead of one per message. Rows with an HTML body go out as multipart/alternative
+ * (text and HTML), the rest as plain text. The poller never claims more than the pool can start on
+ * soon, so rows are not held in SENDING while they wait in memory. It runs every
+ * app.mail.outbox.poll-ms, and app.mail.outbox.linger-ms after a transaction that queued an email
+ * commits, so a burst of emails is picked up as one batch. A failed send is retried with exponential backoff.
+ * After app.mail.outbox.max-attempts the row is parked as DEAD with its last error. Rows stuck in
+ * SENDING because their node died are claimed again once app.mail.outbox.stale-after-ms has passed.
+ * SENT and DEAD rows are deleted after a few days by EmailOutboxRetentionJob. A row tied to an
+ * in-app notification (a deferred budget alert) is deleted instead of sent if that notification
+ * was read or removed by the time the row is due.
+ */
+@Component
+public class EmailOutboxDispatcher {
+
+    private final Logger log = LoggerFactory.getLogger(EmailOutboxDispatcher.class);
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final EmailOutboxRepository repo;
+    private final NotificationRepository notifications;
+    private final JavaMailSender mailSender;
+    private final String owner;
+    private final int workers;
+    private final int batchSize;
+    private final long pollMs;
+    private final long lingerMs;
+    private final int maxAttempts;
+    private final long backoffMs;
+    private final long maxBackoffMs;
+    private final Duration staleAfter;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicBoolean wakeQueued = new AtomicBoolean();
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong dead = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong totalSendMs = new AtomicLong();
+    private final AtomicLong maxQueuedMs = new AtomicLong();
+    private long lastLoggedClaimed;
+
+    private ScheduledExecutorService poller;
+    private ExecutorService pool;
+
+    public EmailOutboxDispatcher(EmailOutboxRepository repo,
+                                 NotificationRepository notifications,
+                                 JavaMailSender mailSender,
+                                 SchedulerLockService lockService,
+                                 @Value("${app.mail.outbox.workers:4}") int workers,
+                                 @Value("${app.mail.outbox.batch-size:50}") int batchSize,
+                                 @Value("${app.mail.outbox.poll-ms:2000}") long pollMs,
+                                 @Value("${app.mail.outbox.linger-ms:200}") long lingerMs,
+                                 @Value("${app.mail.outbox.max-attempts:8}") int maxAttempts,
+                                 @Value("${app.mail.outbox.backoff-ms:30000}") long backoffMs,
+                                 @Value("${app.mail.outbox.max-backoff-ms:3600000}") long maxBackoffMs,
+                                 @Value("${app.mail.outbox.stale-after-ms:600000}") long staleAfterMs) {
+        this.repo = repo;
+        this.notifications = notifications;
+        this.mailSender = mailSender;
+        this.owner = lockService.getInstanceId();
+        this.workers = Math.max(1, workers);
+        this.batchSize = Math.max(1, batchSize);
+        this.pollMs = Math.max(100, pollMs);
+        this.lingerMs = Math.max(0, lingerMs);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffMs = Math.max(1000, backoffMs);
+        this.maxBackoffMs = Math.max(this.backoffMs, maxBackoffMs);
+        this.staleAfter = Duration.ofMillis(Math.max(60_000, staleAfterMs));
+    }
+
+    @PostConstruct
+    void start() {
+        AtomicInteger n = new AtomicInteger();
+        pool = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "email-outbox-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "email-outbox-poller");
+            t.setDaemon(true);
+            return t;
+        });
+        poller.scheduleWithFixedDelay(this::poll, pollMs, pollMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        poller.shutdownNow();
+        pool.shutdown();
+        try {
+            // let in-progress sends finish; anything left in SENDING is reclaimed after stale-after-ms
+            pool.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Asks for a poll after linger-ms instead of at the next tick; called by {@link EmailService}
+     * once the email's row is committed. Calls during the linger collapse into one poll.
+     */
+    void wakeUp() {
+        if (poller != null && wakeQueued.compareAndSet(false, true)) {
+            poller.schedule(() -> {
+                wakeQueued.set(false);
+                poll();
+            }, lingerMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // only ever runs on the poller thread
+    void poll() {
+        try {
+            // at most one batch running and one waiting per worker
+            int capacity = workers * batchSize * 2;
+            int free = capacity - inFlight.get();
+            Instant previous = Instant.EPOCH;
+            while (free > 0) {
+                // the claim timestamp identifies this round's rows, so it must differ from the previous round's
+                Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+                if (!now.isAfter(previous)) {
+                    now = previous.plusMillis(1);
+                }
+                previous = now;
+                int count = repo.claimDue(owner, now, now.minus(staleAfter), free);
+                if (count == 0) {
+                    return;
+                }
+                List<EmailOutbox> rows = repo.findClaimed(owner, now);
+                claimed.addAndGet(rows.size());
+                inFlight.addAndGet(rows.size());
+                for (int i = 0; i < rows.size(); i += batchSize) {
+                    List<EmailOutbox> batch = rows.subList(i, Math.min(i + batchSize, rows.size()));
+                    pool.execute(() -> send(batch));
+                }
+                if (count < free) {
+                    return;
+                }
+                free = capacity - inFlight.get();
+            }
+        } catch (Exception ex) {
+            log.error("Email outbox poll failed: {}", ex.toString(), ex);
+        }
+    }
+
+    /**
+     * Sends one batch over a single connection. JavaMailSender keeps going after a per-message
+     * failure and reports the failed messages in MailSendException#getFailedMessages, so only those
+     * rows are retried; if the connection itself fails, every message is listed there.
+     */
+    private void send(List<EmailOutbox> claimedBatch) {
+        long started = System.currentTimeMillis();
+        List<EmailOutbox> batch = dropUnwanted(claimedBatch);
+        List<EmailOutbox> rows = new ArrayList<>(batch.size());
+        List<MimeMessage> messages = new ArrayList<>(batch.size());
+        for (EmailOutbox row : batch) {
+            try {
+                messages.add(toMessage(row));
+                rows.add(row);
+            } catch (Exception ex) {
+                // e.g. an invalid address: retrying will not help, but max-attempts still applies
+                failed(row, ex);
+                inFlight.decrementAndGet();
+            }
+        }
+
+        Map<Object, Exception> failures = new IdentityHashMap<>();
+        Exception batchError = null;
+        try {
+            if (!messages.isEmpty()) mailSender.send(messages.toArray(new MimeMessage[0]));
+        } catch (MailSendException ex) {
+            failures.putAll(ex.getFailedMessages());
+            if (failures.isEmpty()) batchError = ex;
+        } catch (Exception ex) {
+            batchError = ex;
+        }
+        long now = System.currentTimeMillis();
+        batches.incrementAndGet();
+
+        try {
+            List<Long> delivered = new ArrayList<>(rows.size());
+            for (int i = 0; i < rows.size(); i++) {
+                EmailOutbox row = rows.get(i);
+                Exception error = batchError != null ? batchError : failures.get(messages.get(i));
+                if (error != null) {
+                    failed(row, error);
+                } else {
+                    delivered.add(row.getId());
+                    maxQueuedMs.accumulateAndGet(now - row.getCreatedAt().toEpochMilli(), Math::max);
+                }
+            }
+            if (!delivered.isEmpty()) {
+                repo.markSent(delivered, owner, Instant.ofEpochMilli(now));
+                sent.addAndGet(delivered.size());
+                totalSendMs.addAndGet(now - started);
+            }
+            log.debug("📧 Email batch: {} sent, {} failed in {} ms", delivered.size(), batch.size() - delivered.size(), now - started);
+        } catch (Exception ex) {
+            // rows stay SENDING and are retried after stale-after-ms
+            log.error("Could not record results of an email batch of {}: {}", batch.size(), ex.toString(), ex);
+        } finally {
+            inFlight.addAndGet(-rows.size());
+        }
+    }
+
+    // one query per batch: rows whose notification is no longer unread are deleted, the rest are sent
+    private List<EmailOutbox> dropUnwanted(List<EmailOutbox> batch) {
+        List<Long> notificationIds = new ArrayList<>();
+        for (EmailOutbox row : batch) {
+            if (row.getNotificationId() != null) notificationIds.add(row.getNotificationId());
+        }
+        if (notificationIds.isEmpty()) {
+            return batch;
+        }
+        try {
+            Set<Long> unread = new HashSet<>(notifications.findUnreadIds(notificationIds));
+            List<EmailOutbox> wanted = new ArrayList<>(batch.size());
+            List<Long> unwanted = new ArrayList<>();
+            for (EmailOutbox row : batch) {
+                if (row.getNotificationId() == null || unread.contains(row.getNotificationId())) {
+                    wanted.add(row);
+                } else {
+                    unwanted.add(row.getId());
+                }
+            }
+            if (!unwanted.isEmpty()) {
+                repo.deleteClaimed(unwanted, owner);
+                skipped.addAndGet(unwanted.size());
+                inFlight.addAndGet(-unwanted.size());
+                log.debug("📧 Dropped {} deferred emails whose notification was read", unwanted.size());
+            }
+            return wanted;
+        } catch (Exception ex) {
+            // better an email too many than a lost one
+            log.warn("Could not check notifications of an email batch, sending all {}: {}", batch.size(), ex.toString());
+            return batch;
+        }
+    }
+
+    private MimeMessage toMessage(EmailOutbox row) throws MessagingException {
+        MimeMessage message = mailSender.createMimeMessage();
+        boolean multipart = row.getHtmlBody() != null;
+        MimeMessageHelper helper = new MimeMessageHelper(message, multipart, "UTF-8");
+        helper.setTo(row.getTo());
+        helper.setSubject(row.getSubject());
+        if (multipart) {
+            helper.setText(row.getBody(), row.getHtmlBody());
+        } else {
+            helper.setText(row.getBody());
+        }
+        return message;
+    }
+
+    private void failed(EmailOutbox row, Exception ex) {
+        String error = ex.toString();
+        if (error.length() > MAX_ERROR_LENGTH) {
+            error = error.substring(0, MAX_ERROR_LENGTH);
+        }
+        try {
+            if (row.getAttempts() >= maxAttempts) {
+                repo.markFailed(row.getId(), owner, EmailStatus.DEAD, Instant.now(), error);
+                dead.incrementAndGet();
+                log.error("Email {} to {} gave up after {} attempts: {}", row.getId(), row.getTo(), row.getAttempts(), error);
+            } else {
+                Instant next = Instant.now().plusMillis(backoff(row.getAttempts()));
+                repo.markFailed(row.getId(), owner, EmailStatus.PENDING, next, error);
+                retried.incrementAndGet();
+                log.warn("Email {} to {} failed (attempt {}), retrying at {}: {}", row.getId(), row.getTo(), row.getAttempts(), next, error);
+            }
+        } catch (Exception dbEx) {
+            // the row stays SENDING and is picked up again after stale-after-ms
+            log.error("Could not record failure of email {}: {}", row.getId(), dbEx.toString());
+        }
+    }
+
+    // backoff-ms, doubled per attempt, capped at max-backoff-ms, with up to 10% jitter so retries spread out
+    private long backoff(int attempts) {
+        long delay = backoffMs << Math.min(attempts - 1, 30);
+        if (delay <= 0 || delay > maxBackoffMs) {
+            delay = maxBackoffMs;
+        }
+        return delay + ThreadLocalRandom.current().nextLong(delay / 10 + 1);
+    }
+
+    /**
+     * 📊 Logs the outbox counters once a minute when there was traffic.
+     */
+    @Scheduled(fixedDelayString = "${app.mail.outbox.stats-interval-ms:60000}")
+    void logStats() {
+        long seen = claimed.get();
+        if (seen == lastLoggedClaimed) {
+            return;
+        }
+        lastLoggedClaimed = seen;
+        log.info("📊 Email outbox: {}", getStats());
+    }
+
+    public Stats getStats() {
+        long s = sent.get();
+        return new Stats(repo.countByStatus(EmailStatus.PENDING), repo.countByStatus(EmailStatus.DEAD), inFlight.get(),
+                claimed.get(), s, retried.get(), dead.get(), skipped.get(), batches.get(), s == 0 ? 0 : totalSendMs.get() / s,
+                maxQueuedMs.get());
+    }
+
+    /**
+     * Outbox counters: pending/deadRows are table-wide, the rest count this node's work since start.
+     * avgSendMs is SMTP time per delivered message (a batch's time spread over its messages); maxQueuedMs is the longest time from enqueue to delivery
+     * (a deferred email counts its delay too). skipped counts deferred emails dropped because their notification was read.
+     */
+    public static final class Stats {
+        private final long pendingRows;
+        private final long deadRows;
+        private final int inFlight;
+        private final long claimed;
+        private final long sent;
+        private final long retried;
+        private final long dead;
+        private final long skipped;
+        private final long batches;
+        private final long avgSendMs;
+        private final long maxQueuedMs;
+
+        Stats(long pendingRows, long deadRows, int inFlight, long claimed, long sent, long retried, long dead,
+              long skipped, long batches, long avgSendMs, long maxQueuedMs) {
+            this.pendingRows = pendingRows;
+            this.deadRows = deadRows;
+            this.inFlight = inFlight;
+            this.claimed = claimed;
+            this.sent = sent;
+            this.retried = retried;
+            this.dead = dead;
+            this.skipped = skipped;
+            this.batches = batches;
+            this.avgSendMs = avgSendMs;
+            this.maxQueuedMs = maxQueuedMs;
+        }
+
+        public long getPendingRows() { return pendingRows; }
+        public long getDeadRows() { return deadRows; }
+        public int getInFlight() { return inFlight; }
+        public long getClaimed() { return claimed; }
+        public long getSent() { return sent; }
+        public long getRetried() { return retried; }
+        public long getDead() { return dead; }
+        public long getSkipped() { return skipped; }
+        public long getBatches() { return batches; }
+        public long getAvgSendMs() { return avgSendMs; }
+        public long getMaxQueuedMs() { return maxQueuedMs; }
+
+        @Override
+        public String toString() {
+            return "pending=" + pendingRows + " deadRows=" + deadRows + " inFlight=" + inFlight
+                    + " claimed=" + claimed + " sent=" + sent + " retried=" + retried + " dead=" + dead + " skipped=" + skipped
+                    + " batches=" + batches + " avgSendMs=" + avgSendMs + " maxQueuedMs=" + maxQueuedMs;
+        }
+    }
+}
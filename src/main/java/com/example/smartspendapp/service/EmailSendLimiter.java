@@ -0,0 +1,62 @@
+package com.example.smartspendapp.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Throttles the endpoints that send an email and create a token row (register, resend OTP,
+ * resend verification, forgot password). There are two buckets per request: one per client IP,
+ * which stops a single client from spraying many addresses, and one per target address, which
+ * stops anyone from flooding a single inbox. The IP bucket is checked first, so a blocked client
+ * does not use up the address's allowance.
+ */
+@Component
+public class EmailSendLimiter {
+
+    private final Logger log = LoggerFactory.getLogger(EmailSendLimiter.class);
+
+    private final RateLimiter rateLimiter;
+    private final RateLimiter.Limit perEmail;
+    private final RateLimiter.Limit perIp;
+
+    public EmailSendLimiter(RateLimiter rateLimiter,
+                            @Value("${app.rate-limit.email.capacity:3}") int emailCapacity,
+                            @Value("${app.rate-limit.email.refill-seconds:300}") long emailRefillSeconds,
+                            @Value("${app.rate-limit.ip.capacity:20}") int ipCapacity,
+                            @Value("${app.rate-limit.ip.refill-seconds:30}") long ipRefillSeconds) {
+        this.rateLimiter = rateLimiter;
+        this.perEmail = new RateLimiter.Limit(emailCapacity, Duration.ofSeconds(Math.max(1, emailRefillSeconds)));
+        this.perIp = new RateLimiter.Limit(ipCapacity, Duration.ofSeconds(Math.max(1, ipRefillSeconds)));
+    }
+
+    /**
+     * Returns 0 if an email may be sent to {@code email} on behalf of {@code clientIp}, otherwise
+     * the number of seconds the caller should wait (for a Retry-After header).
+     */
+    public long check(String email, String clientIp) {
+        if (clientIp != null) {
+            long waitMs = rateLimiter.tryAcquire("ip:" + clientIp, perIp);
+            if (waitMs > 0) {
+                log.warn("Email send rate limit hit for client {} (limit {})", clientIp, perIp);
+                return toSeconds(waitMs);
+            }
+        }
+        if (email != null && !email.isBlank()) {
+            long waitMs = rateLimiter.tryAcquire("email:" + email.trim().toLowerCase(Locale.ROOT), perEmail);
+            if (waitMs > 0) {
+                log.warn("Email send rate limit hit for {} (limit {})", email, perEmail);
+                return toSeconds(waitMs);
+            }
+        }
+        return 0;
+    }
+
+    private static long toSeconds(long millis) {
+        return Math.max(1, (millis + 999) / 1000);
+    }
+}
@@ -1,44 +1,55 @@
 package com.example.smartspendapp.service;
 
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
+import com.example.smartspendapp.dto.BudgetDigestLine;
+import com.example.smartspendapp.model.EmailOutbox;
+import com.example.smartspendapp.repository.EmailOutboxRepository;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Composes the app's emails. Nothing is sent from the calling thread: each email becomes an
+ * email_outbox row, written in the caller's transaction when there is one (so it is only sent if
+ * that transaction commits), and {@link EmailOutboxDispatcher} delivers it in the background.
+ */
 @Service
 public class EmailService {
 
-    @Autowired
-    private JavaMailSender mailSender;
+    // what the OTP and verification-link emails promise; matches the token TTL set by their callers
+    static final String TOKEN_EXPIRES_IN = "15 minutes";
+    static final String RESET_EXPIRES_IN = "1 hour";
+
+    // shown for a budget without a category (it covers every category)
+    static final String ALL_CATEGORIES = "All categories";
+
+    private final EmailOutboxRepository outbox;
+    private final EmailOutboxDispatcher dispatcher;
+    private final MailTemplateService templates;
+
+    public EmailService(EmailOutboxRepository outbox, EmailOutboxDispatcher dispatcher, MailTemplateService templates) {
+        this.outbox = outbox;
+        this.dispatcher = dispatcher;
+        this.templates = templates;
+    }
 
     /**
-     * Generic reusable method to send any simple message.
+     * Generic reusable method to send any simple message (plain text only).
      */
     public void sendSimpleMessage(String to, String subject, String text) {
-        SimpleMailMessage message = new SimpleMailMessage();
-        message.setTo(to);
-        message.setSubject(subject);
-        message.setText(text);
-        mailSender.send(message);
-        System.out.println("📧 Email sent to: " + to);
+        enqueue(new EmailOutbox(to, subject, text, null));
+        System.out.println("📧 Email queued for: " + to);
     }
 
     /**
-     * 🔹 Sends verification email using a link (legacy — you can still keep it).
+     * 🔹 Sends verification email using a link.
      */
     public void sendVerificationEmail(String to, String link) {
-        SimpleMailMessage message = new SimpleMailMessage();
-        message.setTo(to);
-        message.setSubject("SmartSpend - Verify your account");
-        message.setText(
-                "Welcome to SmartSpend!\n\n"
-                + "Please verify your account using the link below:\n"
-                + link + "\n\n"
-                + "This link will expire in 24 hours.\n\n"
-                + "Thank you!"
-        );
-        mailSender.send(message);
-        System.out.println("📧 Verification email sent (link) to: " + to);
+        send(to, "SmartSpend - Verify your account", "verify-link", Map.of("link", link, "expiresIn", TOKEN_EXPIRES_IN));
+        System.out.println("📧 Verification email queued (link) for: " + to);
     }
 
     /**
@@ -46,54 +57,91 @@ public class EmailService {
      * Use this method in your ApiAuthController instead of sendVerificationEmail().
      */
     public void sendOtpEmail(String to, String otp) {
-        SimpleMailMessage message = new SimpleMailMessage();
-        message.setTo(to);
-        message.setSubject("SmartSpend - Your verification code");
-        message.setText(
-                "Welcome to SmartSpend!\n\n"
-                + "Your one-time verification code is: " + otp + "\n\n"
-                + "⚠️ This code will expire in 10 minutes.\n\n"
-                + "If you didn’t request this, please ignore this message.\n\n"
-                + "Thank you!"
-        );
-        mailSender.send(message);
-        System.out.println("📧 OTP email sent to: " + to + " (OTP: " + otp + ")");
+        send(to, "SmartSpend - Your verification code", "otp", Map.of("otp", otp, "expiresIn", TOKEN_EXPIRES_IN));
+        System.out.println("📧 OTP email queued for: " + to + " (OTP: " + otp + ")");
     }
 
     /**
-     * 🔹 Sends a budget alert (near/exceeded) email.
+     * 🔹 Sends the password reset link.
+     */
+    public void sendPasswordResetEmail(String to, String link) {
+        send(to, "SmartSpend password reset", "password-reset", Map.of("link", link, "expiresIn", RESET_EXPIRES_IN));
+        System.out.println("📧 Password reset email queued for: " + to);
+    }
+
+    /**
+     * 🔹 Sends a budget alert (near/exceeded) email. A null or blank category is a budget for all categories.
      */
     public void sendBudgetAlert(String to, String category, double spent, double limit, boolean exceeded) {
-        SimpleMailMessage message = new SimpleMailMessage();
-        message.setTo(to);
-
-        String subject;
-        String body;
-
-        if (exceeded) {
-            subject = "⚠️ Budget Exceeded: " + category;
-            body = String.format(
-                    "Hi!\n\nYou have exceeded your budget for %s.\n" +
-                    "Spent: ₹%.2f / Limit: ₹%.2f\n\n" +
-                    "Please review your expenses to get back on track.\n\n" +
-                    "— SmartSpend Team",
-                    category, spent, limit
-            );
-        } else {
-            subject = "⚠️ Budget Nearing Limit: " + category;
-            body = String.format(
-                    "Hi!\n\nYou're nearing your budget for %s.\n" +
-                    "Spent: ₹%.2f / Limit: ₹%.2f\n\n" +
-                    "Keep an eye on your expenses to avoid overspending.\n\n" +
-                    "— SmartSpend Team",
-                    category, spent, limit
-            );
-        }
+        enqueue(budgetAlert(to, category, spent, limit, exceeded));
+        System.out.println("📧 Budget alert email queued for: " + to);
+    }
+
+    /**
+     * 🔹 Queues a budget alert email that is due after {@code delay} and is only sent if in-app
+     * notification {@code notificationId} is still unread then. The row is in the outbox, so it
+     * survives a restart within the delay.
+     */
+    public void sendBudgetAlertIfUnread(String to, String category, double spent, double limit, boolean exceeded,
+                                        Long notificationId, Duration delay) {
+        EmailOutbox email = budgetAlert(to, category, spent, limit, exceeded);
+        email.setNotificationId(notificationId);
+        email.setNextAttemptAt(email.getCreatedAt().plus(delay));
+        enqueue(email);
+        System.out.println("📧 Budget alert email queued for: " + to + " (due in " + delay.toMillis() + " ms unless read)");
+    }
+
+    private EmailOutbox budgetAlert(String to, String category, double spent, double limit, boolean exceeded) {
+        String label = categoryLabel(category);
+        String subject = exceeded
+                ? "⚠️ Budget Exceeded: " + label
+                : "⚠️ Budget Nearing Limit: " + label;
+        return render(to, subject, "budget-alert",
+                Map.of("category", label, "spent", spent, "limit", limit, "exceeded", exceeded));
+    }
+
+    /**
+     * 🔹 Sends the daily budget digest: one email listing every category that alerted since the last digest.
+     */
+    public void sendBudgetDigest(String to, List<BudgetDigestLine> lines) {
+        long exceeded = lines.stream().filter(BudgetDigestLine::isExceeded).count();
+        String subject = exceeded > 0
+                ? "⚠️ Budget digest: " + exceeded + " of " + lines.size() + " budgets exceeded"
+                : "⚠️ Budget digest: " + lines.size() + " budget(s) nearing their limit";
+        send(to, subject, "budget-digest", Map.of("lines", lines));
+        System.out.println("📧 Budget digest email queued for: " + to + " (" + lines.size() + " categories)");
+    }
 
-        message.setSubject(subject);
-        message.setText(body);
+    static String categoryLabel(String category) {
+        return category == null || category.isBlank() ? ALL_CATEGORIES : category;
+    }
 
-        mailSender.send(message);
-        System.out.println("📧 Budget alert email sent to: " + to);
+    // renders the text + HTML versions of a templates/mail/ template and queues them as one multipart email
+    private void send(String to, String subject, String template, Map<String, Object> variables) {
+        enqueue(render(to, subject, template, variables));
+    }
+
+    private EmailOutbox render(String to, String subject, String template, Map<String, Object> variables) {
+        MailTemplateService.Rendered rendered = templates.render(template, variables);
+        return new EmailOutbox(to, subject, rendered.getText(), rendered.getHtml());
+    }
+
+    // one INSERT; the dispatcher is nudged once the row is visible (after commit, or right away without a transaction).
+    // A row due later is left to the regular poll.
+    private void enqueue(EmailOutbox email) {
+        outbox.save(email);
+        if (email.getNextAttemptAt().isAfter(email.getCreatedAt())) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dispatcher.wakeUp();
+                }
+            });
+        } else {
+            dispatcher.wakeUp();
+        }
     }
 }
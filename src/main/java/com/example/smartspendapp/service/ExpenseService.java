@@ -18,6 +18,13 @@ public interface ExpenseService {
      */
     List<Expense> findByUser(User user);
 
+    /**
+     * Find all expenses of the user with this id, without loading the user.
+     * @param userId owner id
+     * @return list of expenses (never null)
+     */
+    List<Expense> findByUserId(Long userId);
+
     /**
      * Find expense by id.
      * @param id expense id
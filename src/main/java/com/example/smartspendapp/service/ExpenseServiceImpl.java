@@ -40,6 +40,19 @@ public class ExpenseServiceImpl implements ExpenseService {
         }
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<Expense> findByUserId(Long userId) {
+        try {
+            if (userId == null) return Collections.emptyList();
+            List<Expense> list = expenseRepository.findByUserId(userId);
+            return list == null ? Collections.emptyList() : list;
+        } catch (Exception ex) {
+            log.error("Error finding expenses for user id {}", userId, ex);
+            return Collections.emptyList();
+        }
+    }
+
     @Override
     @Transactional(readOnly = true)
     public Optional<Expense> findById(Long id) {
@@ -0,0 +1,117 @@
+package com.example.smartspendapp.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-node {@link RateLimiter}. Buckets live in a map and are refilled lazily on access. Updates
+ * are guarded by a fixed array of stripe locks chosen by key hash, so unrelated keys rarely contend
+ * and no lock object is allocated per key. Idle buckets that have refilled completely carry no
+ * state worth keeping, so they are swept once a minute. At most app.rate-limit.max-keys buckets
+ * are kept; past that, new keys are refused instead of growing memory without bound.
+ */
+@Component
+@ConditionalOnProperty(name = "app.rate-limit.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryRateLimiter implements RateLimiter {
+
+    private static final int STRIPES = 64;
+
+    private final Logger log = LoggerFactory.getLogger(InMemoryRateLimiter.class);
+
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final Object[] stripes = new Object[STRIPES];
+    private final int maxKeys;
+
+    public InMemoryRateLimiter(@Value("${app.rate-limit.max-keys:100000}") int maxKeys) {
+        this.maxKeys = Math.max(1, maxKeys);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    @Override
+    public long tryAcquire(String key, Limit limit) {
+        long now = System.nanoTime();
+        synchronized (stripe(key)) {
+            Bucket bucket = buckets.get(key);
+            if (bucket == null) {
+                if (buckets.size() >= maxKeys) {
+                    log.warn("Rate limiter is tracking {} keys; refusing new key {}", buckets.size(), key);
+                    return limit.getRefillEvery().toMillis();
+                }
+                bucket = new Bucket(limit.getCapacity(), limit.getRefillEvery().toNanos(), now);
+                buckets.put(key, bucket);
+            }
+            bucket.refill(now);
+            return bucket.tryTake() ? 0 : bucket.millisUntilNextToken(now);
+        }
+    }
+
+    /**
+     * Drops buckets that are full again. A full bucket behaves exactly like a missing one.
+     */
+    @Scheduled(fixedDelayString = "${app.rate-limit.sweep-ms:60000}")
+    void sweep() {
+        long now = System.nanoTime();
+        buckets.forEach((key, bucket) -> {
+            synchronized (stripe(key)) {
+                bucket.refill(now);
+                if (bucket.isFull()) {
+                    buckets.remove(key, bucket);
+                }
+            }
+        });
+    }
+
+    private Object stripe(String key) {
+        return stripes[(key.hashCode() & 0x7fffffff) % STRIPES];
+    }
+
+    private static final class Bucket {
+        private final int capacity;
+        private final long refillNanos;
+        private int tokens;
+        private long refilledAt;
+
+        Bucket(int capacity, long refillNanos, long now) {
+            this.capacity = capacity;
+            this.refillNanos = refillNanos;
+            this.tokens = capacity;
+            this.refilledAt = now;
+        }
+
+        // whole tokens only; refilledAt advances by exactly the periods credited, so partial progress is kept
+        void refill(long now) {
+            long periods = (now - refilledAt) / refillNanos;
+            if (periods <= 0) return;
+            if (tokens + periods >= capacity) {
+                tokens = capacity;
+                refilledAt = now;
+            } else {
+                tokens += (int) periods;
+                refilledAt += periods * refillNanos;
+            }
+        }
+
+        boolean tryTake() {
+            if (tokens < 1) return false;
+            tokens--;
+            return true;
+        }
+
+        long millisUntilNextToken(long now) {
+            return Math.max(1, (refillNanos - (now - refilledAt)) / 1_000_000);
+        }
+
+        boolean isFull() {
+            return tokens >= capacity;
+        }
+    }
+}
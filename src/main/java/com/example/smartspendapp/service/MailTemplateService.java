@@ -0,0 +1,71 @@
+package com.example.smartspendapp.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Renders email bodies from the templates under templates/mail/: every email has a NAME.html
+ * (wrapped in layout.html) and a NAME.txt (ending with footer.txt) version.
+ *
+ * This engine is separate from the one that renders the web pages. spring.thymeleaf.cache is
+ * off there for development, but mail templates are parsed once and kept in the engine's cache
+ * (app.mail.templates.cache), so a bulk alert run only pays for evaluating expressions, not for
+ * reading and parsing files for every message.
+ */
+@Component
+public class MailTemplateService {
+
+    private static final String PREFIX = "templates/mail/";
+
+    private final SpringTemplateEngine engine;
+
+    public MailTemplateService(@Value("${app.mail.templates.cache:true}") boolean cache) {
+        this.engine = new SpringTemplateEngine();
+        // compile SpEL expressions to bytecode after their first evaluations
+        engine.setEnableSpringELCompiler(true);
+        engine.addTemplateResolver(resolver(TemplateMode.HTML, "*.html", 1, cache));
+        engine.addTemplateResolver(resolver(TemplateMode.TEXT, "*.txt", 2, cache));
+    }
+
+    private static ClassLoaderTemplateResolver resolver(TemplateMode mode, String pattern, int order, boolean cache) {
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix(PREFIX);
+        resolver.setTemplateMode(mode);
+        resolver.setResolvablePatterns(Set.of(pattern));
+        resolver.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        resolver.setOrder(order);
+        resolver.setCacheable(cache);
+        resolver.setCheckExistence(true);
+        return resolver;
+    }
+
+    /**
+     * Renders the plain-text and HTML versions of template {@code name} with the given variables.
+     */
+    public Rendered render(String name, Map<String, Object> variables) {
+        Context context = new Context(Locale.ENGLISH, variables);
+        return new Rendered(engine.process(name + ".txt", context), engine.process(name + ".html", context));
+    }
+
+    public static final class Rendered {
+        private final String text;
+        private final String html;
+
+        Rendered(String text, String html) {
+            this.text = text;
+            this.html = html;
+        }
+
+        public String getText() { return text; }
+        public String getHtml() { return html; }
+    }
+}
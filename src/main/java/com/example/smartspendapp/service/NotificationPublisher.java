@@ -0,0 +1,288 @@
+package com.example.smartspendapp.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process outbox for WebSocket pushes.
+ *
+ * Callers never talk to the broker directly: {@link #publish} defers the message until the
+ * surrounding transaction commits (rolled-back work is never announced) and then drops it into
+ * a bounded queue. A single dispatcher thread drains the queue in batches, groups the batch by
+ * destination and sends one frame per destination (a JSON array when several messages for the
+ * same destination were waiting), so a slow broker only slows the dispatcher, not the caller.
+ * With app.notifications.cluster.enabled, every publish is also relayed to the other nodes
+ * (see {@link ClusterNotificationRelay}).
+ */
+@Component
+public class NotificationPublisher {
+
+    private final Logger log = LoggerFactory.getLogger(NotificationPublisher.class);
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ObjectProvider<ClusterNotificationRelay> clusterRelay;
+    private final NotificationReplayBuffer replayBuffer;
+    private final NotificationSseHub sseHub;
+    private final BlockingQueue<Envelope> queue;
+    private final int batchSize;
+    private final long offerTimeoutMs;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong frames = new AtomicLong();
+    private final AtomicLong totalLatencyMs = new AtomicLong();
+    private final AtomicLong maxLatencyMs = new AtomicLong();
+
+    private long lastLoggedSeen;
+    private volatile boolean running = true;
+    private Thread dispatcher;
+
+    public NotificationPublisher(SimpMessagingTemplate messagingTemplate,
+                                 ObjectProvider<ClusterNotificationRelay> clusterRelay,
+                                 NotificationReplayBuffer replayBuffer,
+                                 NotificationSseHub sseHub,
+                                 @Value("${app.notifications.outbox.capacity:10000}") int capacity,
+                                 @Value("${app.notifications.outbox.batch-size:100}") int batchSize,
+                                 @Value("${app.notifications.outbox.offer-timeout-ms:50}") long offerTimeoutMs) {
+        this.messagingTemplate = messagingTemplate;
+        this.clusterRelay = clusterRelay;
+        this.replayBuffer = replayBuffer;
+        this.sseHub = sseHub;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.batchSize = Math.max(1, batchSize);
+        this.offerTimeoutMs = Math.max(0, offerTimeoutMs);
+    }
+
+    @PostConstruct
+    void start() {
+        dispatcher = new Thread(this::dispatchLoop, "notification-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        running = false;
+        if (dispatcher != null) {
+            dispatcher.interrupt();
+        }
+    }
+
+    /**
+     * Queues a message for {@code destination}. Inside a transaction the message is only queued
+     * after a successful commit; outside one it is queued immediately.
+     */
+    public void publish(String destination, Object payload) {
+        publishToUser(null, destination, payload);
+    }
+
+    /**
+     * Queues a message for one user's sessions: {@code destination} is a user destination such as
+     * "/queue/notifications", resolved by Spring to that principal's sessions only. Same
+     * commit/backpressure rules as {@link #publish}.
+     */
+    public void publishToUser(String user, String destination, Object payload) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    deliver(user, destination, payload);
+                }
+            });
+        } else {
+            deliver(user, destination, payload);
+        }
+    }
+
+    private void deliver(String user, String destination, Object payload) {
+        ClusterNotificationRelay relay = clusterRelay.getIfAvailable();
+        if (relay != null) {
+            relay.broadcast(user, destination, payload);
+        }
+        enqueue(user, destination, payload);
+    }
+
+    /**
+     * Entry point for messages relayed from other nodes: local broker only, no transaction, no re-broadcast.
+     */
+    void publishLocally(String user, String destination, Object payload) {
+        enqueue(user, destination, payload);
+    }
+
+    /**
+     * Backpressure: a full queue makes the producer wait up to offer-timeout-ms, after which the
+     * message is dropped (and counted) rather than stalling request threads behind the broker.
+     */
+    private void enqueue(String user, String destination, Object payload) {
+        // remember for reconnect replay even if the queue is full: the client can still fetch it on resubscribe
+        replayBuffer.record(user, destination, payload);
+        Envelope envelope = new Envelope(user, destination, payload);
+        try {
+            if (queue.offer(envelope, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                enqueued.incrementAndGet();
+                return;
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        dropped.incrementAndGet();
+        log.warn("Notification outbox full ({} queued); dropped message for {}", queue.size(), envelope.describe());
+    }
+
+    private void dispatchLoop() {
+        List<Envelope> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException ex) {
+                if (!running) break;
+                continue;
+            }
+            queue.drainTo(batch, batchSize - 1);
+            dispatch(batch);
+            batch.clear();
+        }
+        log.debug("Notification dispatcher stopped; {} message(s) left in outbox", queue.size());
+    }
+
+    private void dispatch(List<Envelope> batch) {
+        // one frame per (user, destination)
+        Map<String, List<Envelope>> byDestination = new LinkedHashMap<>();
+        for (Envelope e : batch) {
+            byDestination.computeIfAbsent(e.describe(), d -> new ArrayList<>()).add(e);
+        }
+
+        for (Map.Entry<String, List<Envelope>> entry : byDestination.entrySet()) {
+            List<Envelope> envelopes = entry.getValue();
+            Envelope first = envelopes.get(0);
+            List<Object> payloads = new ArrayList<>(envelopes.size());
+            for (Envelope e : envelopes) payloads.add(e.payload);
+            try {
+                Object frame = payloads.size() == 1 ? payloads.get(0) : payloads;
+                if (first.user == null) {
+                    messagingTemplate.convertAndSend(first.destination, frame);
+                } else {
+                    messagingTemplate.convertAndSendToUser(first.user, first.destination, frame);
+                }
+                frames.incrementAndGet();
+                published.addAndGet(envelopes.size());
+                recordLatency(envelopes);
+            } catch (Exception ex) {
+                failed.addAndGet(envelopes.size());
+                log.error("Failed to publish {} notification(s) to {}: {}", envelopes.size(), entry.getKey(), ex.toString(), ex);
+            }
+            if (first.user != null) {
+                // same messages for the user's SSE streams (hands off to the SSE sender thread)
+                sseHub.push(first.user, first.destination, payloads);
+            }
+        }
+        log.debug("Dispatched {} notification(s) in {} frame(s); outbox depth {}", batch.size(), byDestination.size(), queue.size());
+    }
+
+    private void recordLatency(List<Envelope> envelopes) {
+        long now = System.currentTimeMillis();
+        for (Envelope e : envelopes) {
+            long latency = now - e.enqueuedAt;
+            totalLatencyMs.addAndGet(latency);
+            maxLatencyMs.accumulateAndGet(latency, Math::max);
+        }
+    }
+
+    /**
+     * 📊 Logs the outbox counters once a minute when there was traffic (or the queue is backing up).
+     */
+    @Scheduled(fixedDelayString = "${app.notifications.outbox.stats-interval-ms:60000}")
+    void logStats() {
+        long seen = enqueued.get() + dropped.get();
+        if (seen == lastLoggedSeen && queue.isEmpty()) {
+            return;
+        }
+        lastLoggedSeen = seen;
+        log.info("📊 Notification outbox: {}", getStats());
+    }
+
+    public Stats getStats() {
+        long sent = published.get();
+        return new Stats(queue.size(), enqueued.get(), sent, dropped.get(), failed.get(), frames.get(),
+                sent == 0 ? 0 : totalLatencyMs.get() / sent, maxLatencyMs.get());
+    }
+
+    private static final class Envelope {
+        final String user;
+        final String destination;
+        final Object payload;
+        final long enqueuedAt = System.currentTimeMillis();
+
+        Envelope(String user, String destination, Object payload) {
+            this.user = user;
+            this.destination = destination;
+            this.payload = payload;
+        }
+
+        String describe() {
+            return user == null ? destination : "/user/" + user + destination;
+        }
+    }
+
+    /**
+     * Point-in-time outbox counters; latency is measured from publish (post-commit) to broker hand-off.
+     */
+    public static final class Stats {
+        private final int queueDepth;
+        private final long enqueued;
+        private final long published;
+        private final long dropped;
+        private final long failed;
+        private final long frames;
+        private final long avgLatencyMs;
+        private final long maxLatencyMs;
+
+        Stats(int queueDepth, long enqueued, long published, long dropped, long failed, long frames,
+              long avgLatencyMs, long maxLatencyMs) {
+            this.queueDepth = queueDepth;
+            this.enqueued = enqueued;
+            this.published = published;
+            this.dropped = dropped;
+            this.failed = failed;
+            this.frames = frames;
+            this.avgLatencyMs = avgLatencyMs;
+            this.maxLatencyMs = maxLatencyMs;
+        }
+
+        public int getQueueDepth() { return queueDepth; }
+        public long getEnqueued() { return enqueued; }
+        public long getPublished() { return published; }
+        public long getDropped() { return dropped; }
+        public long getFailed() { return failed; }
+        public long getFrames() { return frames; }
+        public long getAvgLatencyMs() { return avgLatencyMs; }
+        public long getMaxLatencyMs() { return maxLatencyMs; }
+
+        @Override
+        public String toString() {
+            return "depth=" + queueDepth + " enqueued=" + enqueued + " published=" + published
+                    + " dropped=" + dropped + " failed=" + failed + " frames=" + frames
+                    + " avgLatencyMs=" + avgLatencyMs + " maxLatencyMs=" + maxLatencyMs;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.smartspendapp.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Small per-user ring buffer of the most recent notification payloads pushed from this node,
+ * used to replay what a client missed while its WebSocket was reconnecting.
+ *
+ * Filled by {@link NotificationPublisher} when a notification is actually queued for delivery
+ * (after commit, including messages relayed from other nodes). Both the number of users and
+ * the entries per user are capped; the least recently active users are forgotten first.
+ */
+@Component
+public class NotificationReplayBuffer {
+
+    private final int perUser;
+    private final int maxUsers;
+    private final Map<String, UserBuffer> buffers;
+
+    public NotificationReplayBuffer(@Value("${app.notifications.replay.buffer-size:50}") int perUser,
+                                    @Value("${app.notifications.replay.max-users:10000}") int maxUsers) {
+        this.perUser = Math.max(1, perUser);
+        this.maxUsers = Math.max(1, maxUsers);
+        this.buffers = new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, UserBuffer> eldest) {
+                return size() > NotificationReplayBuffer.this.maxUsers;
+            }
+        };
+    }
+
+    /**
+     * Remembers a payload sent to {@code user}. Only notification messages (a map with a numeric
+     * "id" sent to the notifications queue) are kept; anything else is ignored.
+     */
+    void record(String user, String destination, Object payload) {
+        if (user == null || !NotificationService.USER_QUEUE.equals(destination) || !(payload instanceof Map<?, ?> map)) {
+            return;
+        }
+        if (!(map.get("id") instanceof Number id)) {
+            return;
+        }
+        UserBuffer buffer;
+        synchronized (buffers) {
+            buffer = buffers.computeIfAbsent(user, u -> new UserBuffer());
+        }
+        buffer.add(id.longValue(), payload);
+    }
+
+    /**
+     * Payloads with id greater than {@code lastSeenId}, oldest first, if this buffer can answer
+     * completely; empty if the gap is not fully covered (unknown user or entries already evicted),
+     * in which case the caller has to fall back to the database.
+     */
+    public Optional<List<Object>> since(String user, long lastSeenId) {
+        UserBuffer buffer;
+        synchronized (buffers) {
+            buffer = buffers.get(user);
+        }
+        return buffer == null ? Optional.empty() : buffer.since(lastSeenId);
+    }
+
+    private final class UserBuffer {
+        private final Deque<Entry> entries = new ArrayDeque<>();
+        // highest id dropped from this buffer; gaps at or below it cannot be answered from memory
+        private long evictedUpTo = Long.MAX_VALUE;
+
+        synchronized void add(long id, Object payload) {
+            if (entries.isEmpty() && evictedUpTo == Long.MAX_VALUE) {
+                // first entry: anything older than it was never seen by this node
+                evictedUpTo = id - 1;
+            }
+            entries.addLast(new Entry(id, payload));
+            while (entries.size() > perUser) {
+                evictedUpTo = Math.max(evictedUpTo, entries.removeFirst().id);
+            }
+        }
+
+        synchronized Optional<List<Object>> since(long lastSeenId) {
+            if (lastSeenId < evictedUpTo) {
+                return Optional.empty();
+            }
+            List<Object> missed = new ArrayList<>();
+            for (Entry e : entries) {
+                if (e.id > lastSeenId) missed.add(e.payload);
+            }
+            return Optional.of(missed);
+        }
+    }
+
+    private static final class Entry {
+        final long id;
+        final Object payload;
+
+        Entry(long id, Object payload) {
+            this.id = id;
+            this.payload = payload;
+        }
+    }
+}
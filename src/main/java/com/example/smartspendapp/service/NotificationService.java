@@ -1,79 +1,298 @@
 package com.example.smartspendapp.service;
 
+import com.example.smartspendapp.dto.NotificationDto;
 import com.example.smartspendapp.model.Notification;
 import com.example.smartspendapp.model.User;
 import com.example.smartspendapp.repository.NotificationRepository;
+import com.example.smartspendapp.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class NotificationService {
 
     private final NotificationRepository repo;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final UserRepository userRepository;
+    // user destinations, resolved per authenticated principal (the user's email); clients subscribe to /user/queue/...
+    static final String USER_QUEUE = "/queue/notifications";
+    static final String UNREAD_COUNT_QUEUE = "/queue/notifications.unread-count";
+
+    static final int REPLAY_LIMIT = 100;
+
+    private final NotificationPublisher publisher;
+    private final NotificationReplayBuffer replayBuffer;
     private final Logger log = LoggerFactory.getLogger(NotificationService.class);
 
-    public NotificationService(NotificationRepository repo, SimpMessagingTemplate messagingTemplate) {
+    // open coalescing windows keyed by "userId|title"; 0 disables coalescing
+    private final long coalesceWindowMs;
+    private final Map<String, Burst> bursts = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService coalesceTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "notification-coalescer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public NotificationService(NotificationRepository repo,
+                               UserRepository userRepository,
+                               NotificationPublisher publisher,
+                               NotificationReplayBuffer replayBuffer,
+                               @Value("${app.notifications.coalesce-window-ms:5000}") long coalesceWindowMs) {
         this.repo = repo;
-        this.messagingTemplate = messagingTemplate;
+        this.userRepository = userRepository;
+        this.publisher = publisher;
+        this.replayBuffer = replayBuffer;
+        this.coalesceWindowMs = coalesceWindowMs;
     }
 
     public Notification createNotification(User user, String title, String body) {
+        return createNotification(user == null ? null : user.getId(), user == null ? null : user.getEmail(), title, body);
+    }
+
+    /**
+     * Same as {@link #createNotification(User, String, String)} for callers that only hold the user id
+     * (e.g. the budget alert sweep): the owner is attached as a reference, so no users row is loaded.
+     *
+     * Bursts are coalesced per user and title: the first notification is stored and pushed right away,
+     * further ones with the same title within app.notifications.coalesce-window-ms are only counted,
+     * and when the window closes the stored row gets the latest body and the total count and is pushed
+     * once more. For a merged call the returned entity is the one stored at the start of the burst.
+     *
+     * The burst is claimed in the map before anything is inserted, so of two concurrent calls with the
+     * same title exactly one inserts; the other is counted and waits for the leader's row.
+     */
+    public Notification createNotification(Long userId, String userEmail, String title, String body) {
+        if (coalesceWindowMs <= 0 || userId == null) {
+            return insertAndPush(userId, userEmail, title, body);
+        }
+        String key = userId + "|" + title;
+        Burst claim = new Burst(userId, userEmail, body);
+        Burst burst = bursts.compute(key, (k, open) -> open != null && open.add(body) ? open : claim);
+        if (burst != claim) {
+            try {
+                return burst.leader.join();
+            } catch (CompletionException ex) {
+                // the leader's insert failed, so this one was not stored as part of the burst
+                return insertAndPush(userId, userEmail, title, body);
+            }
+        }
+
+        Notification saved;
+        try {
+            saved = insertAndPush(userId, userEmail, title, body);
+        } catch (RuntimeException ex) {
+            bursts.remove(key, claim);
+            claim.close();
+            claim.leader.completeExceptionally(ex);
+            throw ex;
+        }
+        claim.leader.complete(saved);
+        coalesceTimer.schedule(() -> flush(key, claim), coalesceWindowMs, TimeUnit.MILLISECONDS);
+        return saved;
+    }
+
+    private Notification insertAndPush(Long userId, String userEmail, String title, String body) {
         Notification n = new Notification();
-        n.setUser(user);
+        n.setUser(userId == null ? null : userRepository.getReferenceById(userId));
         n.setTitle(title);
         n.setBody(body);
-      
         n.setCreatedAt(Instant.now());
 
         Notification saved = repo.save(n);
+        push(userEmail, toPayload(saved.getId(), saved.getTitle(), saved.getBody(), saved.getCreatedAt(), 1, userEmail));
+        return saved;
+    }
 
-        // Prepare a lightweight payload for the websocket/client
-        Map<String, Object> payload = new HashMap<>();
-        payload.put("id", saved.getId());
-        payload.put("title", saved.getTitle());
-        payload.put("body", saved.getBody());
-        // use isReadFlag() (boolean getter) — NOT getReadFlag()
-       
-        payload.put("createdAt", saved.getCreatedAt() == null ? null : saved.getCreatedAt().toString());
-        payload.put("userEmail", user == null ? null : user.getEmail());
+    // push to the owner's sessions only (/user/queue/notifications); goes out after the caller's transaction commits
+    private void push(String userEmail, Map<String, Object> payload) {
+        if (userEmail != null) {
+            publisher.publishToUser(userEmail, USER_QUEUE, payload);
+            log.debug("Queued websocket notification for {} : {}", userEmail, payload);
+        } else {
+            log.debug("Notification {} has no owner email; not pushed over websocket", payload.get("id"));
+        }
+    }
 
+    /**
+     * Closes a burst: one UPDATE of the stored row (latest body, total count; read flag unchanged) and one
+     * push. If the leading row is gone (its transaction rolled back) the merged ones are inserted as a new row.
+     */
+    private void flush(String key, Burst burst) {
+        bursts.remove(key, burst);
+        Burst.Closed closed = burst.close();
+        Notification leader = burst.leader.getNow(null);
+        if (closed.count <= 1 || leader == null) {
+            return;
+        }
         try {
-            // publish to topic specific to the user id
-            String dest = "/topic/notifications/" + (user == null ? "unknown" : user.getId());
-            messagingTemplate.convertAndSend(dest, payload);
-            log.info("Sent websocket notification to {} : {}", dest, payload);
+            if (repo.updateCoalesced(leader.getId(), closed.latestBody, closed.count) == 1) {
+                push(burst.userEmail, toPayload(leader.getId(), leader.getTitle(), closed.latestBody,
+                        leader.getCreatedAt(), closed.count, burst.userEmail));
+            } else {
+                Notification n = new Notification();
+                n.setUser(userRepository.getReferenceById(burst.userId));
+                n.setTitle(leader.getTitle());
+                n.setBody(closed.latestBody);
+                n.setCoalescedCount(closed.count - 1);
+                n.setCreatedAt(Instant.now());
+                Notification saved = repo.save(n);
+                push(burst.userEmail, toPayload(saved.getId(), saved.getTitle(), saved.getBody(),
+                        saved.getCreatedAt(), closed.count - 1, burst.userEmail));
+            }
+            log.debug("Coalesced {} notifications '{}' for user {}", closed.count, leader.getTitle(), burst.userId);
         } catch (Exception ex) {
-            log.error("Failed to send websocket notification: {}", ex.toString(), ex);
+            log.error("Failed to flush coalesced notifications for {}: {}", key, ex.toString(), ex);
         }
+    }
 
-        return saved;
+    @PreDestroy
+    void shutdown() {
+        coalesceTimer.shutdownNow();
+        // flush what is still open so merged notifications are not lost on a clean shutdown
+        bursts.forEach(this::flush);
+    }
+
+    /**
+     * Notifications pushed to {@code userEmail} after {@code lastSeenId}, oldest first, for a client
+     * that reconnects. Answered from the in-memory replay buffer when it covers the gap, otherwise
+     * with one indexed query (capped at REPLAY_LIMIT rows).
+     */
+    public List<Object> replaySince(String userEmail, long lastSeenId) {
+        Optional<List<Object>> buffered = replayBuffer.since(userEmail, lastSeenId);
+        if (buffered.isPresent()) {
+            return buffered.get();
+        }
+        Optional<User> user = userRepository.findByEmail(userEmail);
+        if (user.isEmpty()) {
+            return List.of();
+        }
+        List<Object> missed = new ArrayList<>();
+        for (NotificationDto n : repo.findForUserAfter(user.get().getId(), lastSeenId, PageRequest.of(0, REPLAY_LIMIT))) {
+            missed.add(toPayload(n.getId(), n.getTitle(), n.getMessage(), n.getCreatedAt(), n.getCount(), userEmail));
+        }
+        return missed;
+    }
+
+    // Lightweight payload for the websocket/client; same shape for live pushes and replays
+    private static Map<String, Object> toPayload(Long id, String title, String body, Instant createdAt, int count, String userEmail) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("id", id);
+        payload.put("title", title);
+        payload.put("body", body);
+        payload.put("count", count);
+        payload.put("createdAt", createdAt == null ? null : createdAt.toString());
+        payload.put("userEmail", userEmail);
+        return payload;
+    }
+
+    public List<NotificationDto> getUnread(Long userId) {
+        return repo.findUnreadForUser(userId);
+    }
+
+    /**
+     * One page of a user's notifications, newest first. Pass a null cursor for the first page,
+     * then the createdAt/id of the last item received to get the next one.
+     */
+    public List<NotificationDto> getPage(Long userId, Instant beforeCreatedAt, Long beforeId, int limit) {
+        PageRequest page = PageRequest.of(0, limit);
+        if (beforeCreatedAt == null || beforeId == null) {
+            return repo.findLatestForUser(userId, page);
+        }
+        return repo.findForUserBefore(userId, beforeCreatedAt, beforeId, page);
+    }
+
+    public long countUnread(Long userId) {
+        return repo.countUnreadForUser(userId);
     }
 
-    public List<Notification> getUnread(User user) {
-        return repo.findByUserAndReadFlagFalseOrderByCreatedAtDesc(user);
+    /**
+     * Marks the given notifications of this user read with a single UPDATE and, if anything
+     * changed, pushes the new unread count. Returns the number of notifications updated.
+     */
+    public int markRead(Long userId, String userEmail, Collection<Long> notificationIds) {
+        if (notificationIds == null || notificationIds.isEmpty()) {
+            return 0;
+        }
+        int updated = repo.markReadForUser(userId, notificationIds);
+        if (updated > 0) {
+            publishUnreadCount(userId, userEmail);
+        }
+        return updated;
     }
 
-    public List<Notification> getAll(User user) {
-        return repo.findByUserOrderByCreatedAtDesc(user);
+    public int markAllRead(Long userId, String userEmail) {
+        int updated = repo.markAllReadForUser(userId);
+        if (updated > 0) {
+            publishUnreadCount(userId, userEmail);
+        }
+        return updated;
     }
 
-    public void markRead(Long notificationId) {
-        repo.findById(notificationId).ifPresent(n -> {
-            
-            repo.save(n);
-        });
+    /**
+     * Sends {"count": n} to the user's /user/queue/notifications.unread-count so open tabs can refresh
+     * their badge without polling. Kept off the notifications queue, which renders every message as a toast.
+     */
+    private void publishUnreadCount(Long userId, String userEmail) {
+        if (userEmail == null) return;
+        publisher.publishToUser(userEmail, UNREAD_COUNT_QUEUE, Map.of("count", repo.countUnreadForUser(userId)));
     }
 
-    public Optional<Notification> findLatestSimilar(User user, String title, String body) {
-        return repo.findFirstByUserAndTitleAndBodyOrderByCreatedAtDesc(user, title, body);
+    /**
+     * One open coalescing window: the leading notification (stored by the thread that claimed the
+     * window) plus what arrived after it.
+     */
+    private static final class Burst {
+        // completed by the claiming thread once the leading row is inserted
+        final CompletableFuture<Notification> leader = new CompletableFuture<>();
+        final Long userId;
+        final String userEmail;
+        private int count = 1;
+        private String latestBody;
+        private boolean closed;
+
+        Burst(Long userId, String userEmail, String body) {
+            this.userId = userId;
+            this.userEmail = userEmail;
+            this.latestBody = body;
+        }
+
+        synchronized boolean add(String body) {
+            if (closed) return false;
+            count++;
+            latestBody = body;
+            return true;
+        }
+
+        synchronized Closed close() {
+            closed = true;
+            return new Closed(count, latestBody);
+        }
+
+        static final class Closed {
+            final int count;
+            final String latestBody;
+
+            Closed(int count, String latestBody) {
+                this.count = count;
+                this.latestBody = latestBody;
+            }
+        }
     }
 }
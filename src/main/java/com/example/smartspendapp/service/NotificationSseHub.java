@@ -0,0 +1,276 @@
+package com.example.smartspendapp.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Server-Sent Events connections for /api/notifications/stream.
+ *
+ * An idle SSE connection is just a parked async request (no thread), so the cost per client is
+ * the emitter object and its socket. Every connection has its own bounded queue of pending
+ * events; a small sender pool (app.notifications.sse.sender-threads) drains queues that have
+ * something in them, a bounded batch at a time, so a slow or half-open socket only ever holds one
+ * pool thread and never delays the other connections' queues. A connection whose queue overflows
+ * (app.notifications.sse.queue-size) is completed: the browser's EventSource reconnects and
+ * resumes from Last-Event-ID, so nothing is lost. The heartbeat thread only queues a comment on
+ * idle connections and never writes to a socket itself.
+ *
+ * Messages arrive from {@link NotificationPublisher}'s dispatcher: notifications become
+ * "notification" events whose id is the notification id, which is what the browser sends back as
+ * Last-Event-ID when it reconnects. Unread counts become "unread-count" events.
+ */
+@Component
+public class NotificationSseHub {
+
+    // events written per drain task before the thread moves on to other connections
+    private static final int DRAIN_BATCH = 32;
+
+    private final Logger log = LoggerFactory.getLogger(NotificationSseHub.class);
+
+    private final Map<String, Set<Connection>> connectionsByUser = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicLong overflowed = new AtomicLong();
+    private final long timeoutMs;
+    private final int queueSize;
+    private final PresenceRegistry presence;
+
+    private final ExecutorService sender;
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "notification-sse-heartbeat");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public NotificationSseHub(PresenceRegistry presence,
+                              @Value("${app.notifications.sse.timeout-ms:1800000}") long timeoutMs,
+                              @Value("${app.notifications.sse.heartbeat-ms:25000}") long heartbeatMs,
+                              @Value("${app.notifications.sse.sender-threads:4}") int senderThreads,
+                              @Value("${app.notifications.sse.queue-size:256}") int queueSize) {
+        this.presence = presence;
+        this.timeoutMs = timeoutMs;
+        this.queueSize = Math.max(1, queueSize);
+        AtomicInteger seq = new AtomicInteger();
+        this.sender = Executors.newFixedThreadPool(Math.max(1, senderThreads), r -> {
+            Thread t = new Thread(r, "notification-sse-sender-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        long interval = Math.max(1000, heartbeatMs);
+        heartbeat.scheduleWithFixedDelay(this::queueHeartbeats, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        heartbeat.shutdownNow();
+        sender.shutdownNow();
+        connectionsByUser.values().forEach(set -> set.forEach(c -> c.emitter.complete()));
+    }
+
+    /**
+     * Opens a stream for {@code user}. The emitter times out after app.notifications.sse.timeout-ms,
+     * after which the browser's EventSource reconnects on its own (sending Last-Event-ID).
+     */
+    public SseEmitter subscribe(String user) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Connection connection = new Connection(user, emitter);
+        // add inside compute: a concurrent remove() of the user's last connection cannot drop this set
+        connectionsByUser.compute(user, (u, set) -> {
+            set = set == null ? ConcurrentHashMap.newKeySet() : set;
+            set.add(connection);
+            return set;
+        });
+        connections.incrementAndGet();
+        presence.connected(user, sessionId(emitter));
+
+        Runnable remove = () -> remove(connection);
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(err -> remove.run());
+        return emitter;
+    }
+
+    /**
+     * Sends already-known notifications (a Last-Event-ID resume) to one emitter, oldest first.
+     * The replay is bounded by the caller, so it is queued even if it exceeds queue-size.
+     */
+    public void replay(String user, SseEmitter emitter, List<Object> payloads) {
+        if (payloads.isEmpty()) return;
+        Set<Connection> set = connectionsByUser.get(user);
+        if (set == null) return;
+        for (Connection connection : set) {
+            if (connection.emitter == emitter) {
+                for (Object payload : payloads) {
+                    connection.offer(event("notification", payload), false);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Called by the publisher's dispatcher for per-user messages; a no-op unless the user has an open stream.
+     * Only queues the events, it never writes to a socket.
+     */
+    void push(String user, String destination, List<Object> payloads) {
+        String eventName = eventName(destination);
+        Set<Connection> set = eventName == null ? null : connectionsByUser.get(user);
+        if (set == null) {
+            return;
+        }
+        for (Connection connection : set) {
+            for (Object payload : payloads) {
+                if (!connection.offer(event(eventName, payload), true)) break;
+            }
+        }
+    }
+
+    public int getConnectionCount() {
+        return connections.get();
+    }
+
+    /**
+     * Connections completed because their queue was full (a client not reading fast enough).
+     */
+    public long getOverflowCount() {
+        return overflowed.get();
+    }
+
+    private static String sessionId(SseEmitter emitter) {
+        return "sse-" + System.identityHashCode(emitter);
+    }
+
+    private static String eventName(String destination) {
+        if (NotificationService.USER_QUEUE.equals(destination)) return "notification";
+        if (NotificationService.UNREAD_COUNT_QUEUE.equals(destination)) return "unread-count";
+        return null;
+    }
+
+    private static SseEmitter.SseEventBuilder event(String eventName, Object payload) {
+        SseEmitter.SseEventBuilder event = SseEmitter.event().name(eventName).data(payload);
+        if (payload instanceof Map<?, ?> map && map.get("id") != null && "notification".equals(eventName)) {
+            event.id(String.valueOf(map.get("id")));
+        }
+        return event;
+    }
+
+    private void queueHeartbeats() {
+        int queued = 0;
+        for (Set<Connection> set : connectionsByUser.values()) {
+            for (Connection connection : set) {
+                // a connection with events pending gets bytes on the wire anyway
+                if (connection.size.get() == 0 && connection.offer(SseEmitter.event().comment("hb"), true)) {
+                    queued++;
+                }
+            }
+        }
+        log.debug("SSE heartbeat queued for {} of {} connection(s)", queued, connections.get());
+    }
+
+    private void remove(Connection connection) {
+        connection.closed = true;
+        connectionsByUser.computeIfPresent(connection.user, (u, set) -> {
+            if (set.remove(connection)) {
+                connections.decrementAndGet();
+                presence.disconnected(connection.user, sessionId(connection.emitter));
+            }
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    /**
+     * One open stream: its emitter plus the events waiting to be written to it. At most one drain
+     * task per connection is queued or running on the sender pool at any time.
+     */
+    private final class Connection {
+        final String user;
+        final SseEmitter emitter;
+        final Queue<SseEmitter.SseEventBuilder> pending = new ConcurrentLinkedQueue<>();
+        final AtomicInteger size = new AtomicInteger();
+        final AtomicBoolean draining = new AtomicBoolean();
+        volatile boolean closed;
+
+        Connection(String user, SseEmitter emitter) {
+            this.user = user;
+            this.emitter = emitter;
+        }
+
+        /**
+         * Queues an event and makes sure a drain is scheduled. With {@code bounded}, a full queue
+         * completes the connection instead; returns false when the connection is (now) closed.
+         */
+        boolean offer(SseEmitter.SseEventBuilder event, boolean bounded) {
+            if (closed) return false;
+            if (size.incrementAndGet() > queueSize && bounded) {
+                size.decrementAndGet();
+                overflowed.incrementAndGet();
+                log.debug("SSE queue full for {}; completing the stream so the client resumes", user);
+                close(null);
+                return false;
+            }
+            pending.add(event);
+            scheduleDrain();
+            return true;
+        }
+
+        void scheduleDrain() {
+            if (closed || !draining.compareAndSet(false, true)) return;
+            try {
+                sender.execute(this::drain);
+            } catch (RejectedExecutionException ex) {
+                // shutting down
+                draining.set(false);
+            }
+        }
+
+        void drain() {
+            try {
+                SseEmitter.SseEventBuilder event;
+                for (int i = 0; i < DRAIN_BATCH && !closed && (event = pending.poll()) != null; i++) {
+                    size.decrementAndGet();
+                    try {
+                        emitter.send(event);
+                    } catch (IOException | IllegalStateException ex) {
+                        // client went away; the container will also fire onError/onCompletion
+                        close(ex);
+                        return;
+                    }
+                }
+            } finally {
+                draining.set(false);
+            }
+            // more pending: go to the back of the pool's queue so other connections get a turn
+            if (!pending.isEmpty()) scheduleDrain();
+        }
+
+        void close(Throwable error) {
+            remove(this);
+            pending.clear();
+            size.set(0);
+            if (error == null) {
+                emitter.complete();
+            } else {
+                emitter.completeWithError(error);
+            }
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.smartspendapp.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown by {@link BoundedPasswordEncoder} when the hashing pool and its queue are full, or a
+ * queued hash did not start in time. Answered with 503 so clients back off instead of piling up.
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class PasswordHashingBusyException extends AuthenticationServiceException {
+
+    public PasswordHashingBusyException(String msg) {
+        super(msg);
+    }
+}
@@ -25,6 +25,7 @@ public class PasswordResetService {
     private final UserRepository userRepo;
     private final EmailService emailService;
     private final PasswordEncoder passwordEncoder;
+    private final TtlUserCache userCache;
 
     @Value("${app.frontend-url}")
     private String frontendUrl;
@@ -33,11 +34,13 @@ public class PasswordResetService {
     public PasswordResetService(PasswordResetTokenRepository tokenRepo,
                                 UserRepository userRepo,
                                 EmailService emailService,
-                                PasswordEncoder passwordEncoder) {
+                                PasswordEncoder passwordEncoder,
+                                TtlUserCache userCache) {
         this.tokenRepo = tokenRepo;
         this.userRepo = userRepo;
         this.emailService = emailService;
         this.passwordEncoder = passwordEncoder;
+        this.userCache = userCache;
     }
 
     public void createResetTokenAndSend(User user) {
@@ -50,9 +53,7 @@ public class PasswordResetService {
         tokenRepo.save(pr);
 
         String link = frontendUrl + "/reset-password?token=" + token;
-        String body = "Reset your SmartSpend password using the link below:\n\n" + link + 
-                      "\n\nThis link expires in 1 hour.";
-        emailService.sendSimpleMessage(user.getEmail(), "SmartSpend password reset", body);
+        emailService.sendPasswordResetEmail(user.getEmail(), link);
 
         log.info("Password reset token created for {} (token={})", user.getEmail(), token);
     }
@@ -76,6 +77,7 @@ public class PasswordResetService {
         User u = pr.getUser();
         u.setPassword(passwordEncoder.encode(newPassword));
         userRepo.save(u);
+        userCache.evict(u.getEmail());
 
         pr.setUsed(true);
         tokenRepo.save(pr);
@@ -0,0 +1,81 @@
+package com.example.smartspendapp.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.security.Principal;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Who is looking at the app right now, on this node.
+ *
+ * Live sessions are tracked per user (the login email, which is the STOMP principal name):
+ * STOMP sessions from connect/disconnect events and SSE streams from {@link NotificationSseHub}.
+ * Sessions are kept as id sets rather than bare counters, so a duplicate disconnect event
+ * cannot push a count below zero. Users with no sessions are removed, so the map only
+ * holds users who are online.
+ */
+@Component
+public class PresenceRegistry {
+
+    private final Logger log = LoggerFactory.getLogger(PresenceRegistry.class);
+
+    private final Map<String, Set<String>> sessions = new ConcurrentHashMap<>();
+
+    public void connected(String user, String sessionId) {
+        if (user == null || sessionId == null) return;
+        // add inside compute: disconnected() of the user's last session cannot drop this set in between
+        sessions.compute(user, (u, set) -> {
+            set = set == null ? ConcurrentHashMap.newKeySet() : set;
+            set.add(sessionId);
+            return set;
+        });
+    }
+
+    public void disconnected(String user, String sessionId) {
+        if (user == null || sessionId == null) return;
+        sessions.computeIfPresent(user, (u, set) -> {
+            set.remove(sessionId);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    public boolean isOnline(String user) {
+        return user != null && sessions.containsKey(user);
+    }
+
+    public int sessionCount(String user) {
+        Set<String> set = user == null ? null : sessions.get(user);
+        return set == null ? 0 : set.size();
+    }
+
+    public int onlineUserCount() {
+        return sessions.size();
+    }
+
+    @EventListener
+    public void onStompConnected(SessionConnectedEvent event) {
+        Principal user = event.getUser();
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders());
+        if (user != null) {
+            connected(user.getName(), "ws-" + sessionId);
+            log.debug("Presence: {} connected over STOMP ({} session(s))", user.getName(), sessionCount(user.getName()));
+        }
+    }
+
+    @EventListener
+    public void onStompDisconnected(SessionDisconnectEvent event) {
+        Principal user = event.getUser();
+        if (user != null) {
+            disconnected(user.getName(), "ws-" + event.getSessionId());
+            log.debug("Presence: {} disconnected from STOMP ({} session(s) left)", user.getName(), sessionCount(user.getName()));
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.smartspendapp.service;
+
+import java.time.Duration;
+
+/**
+ * Token-bucket rate limiter keyed by an arbitrary string (e.g. "email:alice@example.com").
+ *
+ * The in-memory implementation ({@link InMemoryRateLimiter}) limits per node. For a multi-node
+ * deployment, provide another bean of this type backed by a shared store (a DB table or Redis)
+ * and set app.rate-limit.store to something other than "memory".
+ */
+public interface RateLimiter {
+
+    /**
+     * Takes one token from the bucket {@code key}. Returns 0 if the call is allowed, otherwise how
+     * many milliseconds until a token becomes available (nothing is taken in that case).
+     */
+    long tryAcquire(String key, Limit limit);
+
+    /**
+     * A bucket holds up to {@code capacity} tokens and gets one back every {@code refillEvery}.
+     */
+    final class Limit {
+        private final int capacity;
+        private final Duration refillEvery;
+
+        public Limit(int capacity, Duration refillEvery) {
+            if (capacity < 1 || refillEvery.isNegative() || refillEvery.isZero()) {
+                throw new IllegalArgumentException("capacity must be >= 1 and refillEvery > 0");
+            }
+            this.capacity = capacity;
+            this.refillEvery = refillEvery;
+        }
+
+        public int getCapacity() { return capacity; }
+        public Duration getRefillEvery() { return refillEvery; }
+
+        @Override
+        public String toString() {
+            return capacity + " per " + refillEvery.multipliedBy(capacity).toSeconds() + "s";
+        }
+    }
+}
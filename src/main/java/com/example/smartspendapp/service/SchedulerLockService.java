@@ -0,0 +1,125 @@
+package com.example.smartspendapp.service;
+
+import com.example.smartspendapp.model.SchedulerLock;
+import com.example.smartspendapp.repository.SchedulerLockRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * DB-backed leases for @Scheduled jobs, so that with several app instances each job
+ * (or each shard of a job) runs on exactly one node at a time.
+ *
+ * Usage from any scheduled method:
+ * <pre>
+ *   lockService.runExclusive("my-job", Duration.ofMinutes(10), Duration.ofSeconds(30), this::doWork);
+ * </pre>
+ * lockAtMostFor bounds how long a crashed node can block the job; long-running work should call
+ * {@link #extend} between batches. lockAtLeastFor keeps the lease after a fast run so that nodes
+ * whose clocks fire a little later skip the same slot.
+ */
+@Service
+public class SchedulerLockService {
+
+    private final Logger log = LoggerFactory.getLogger(SchedulerLockService.class);
+
+    private final SchedulerLockRepository repo;
+    private final String instanceId;
+
+    // acquisition time per lease held by this node (for lockAtLeastFor on release)
+    private final Map<String, Instant> held = new ConcurrentHashMap<>();
+
+    public SchedulerLockService(SchedulerLockRepository repo,
+                                @Value("${app.instance-id:}") String instanceId) {
+        this.repo = repo;
+        this.instanceId = (instanceId == null || instanceId.isBlank()) ? defaultInstanceId() : instanceId;
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    /**
+     * Try to take the named lease for at most {@code lockAtMostFor}. Never blocks.
+     */
+    public boolean tryAcquire(String name, Duration lockAtMostFor) {
+        Instant now = Instant.now();
+        ensureRowExists(name);
+        boolean acquired = repo.tryAcquire(name, instanceId, now, now.plus(lockAtMostFor)) == 1;
+        if (acquired) {
+            held.put(name, now);
+        }
+        return acquired;
+    }
+
+    /**
+     * Heartbeat for a lease this node holds. Returns false if the lease was lost
+     * (expired and taken over) — callers should stop working in that case.
+     */
+    public boolean extend(String name, Duration lockAtMostFor) {
+        Instant now = Instant.now();
+        return repo.extend(name, instanceId, now, now.plus(lockAtMostFor)) == 1;
+    }
+
+    /**
+     * Release a lease, keeping it until at least acquisition time + {@code lockAtLeastFor}.
+     */
+    public void release(String name, Duration lockAtLeastFor) {
+        Instant acquiredAt = held.remove(name);
+        Instant now = Instant.now();
+        Instant until = acquiredAt == null ? now : acquiredAt.plus(lockAtLeastFor);
+        if (until.isBefore(now)) until = now;
+        repo.release(name, instanceId, until);
+    }
+
+    /**
+     * Run {@code task} only if the named lease can be taken. Returns false if another node holds it.
+     */
+    public boolean runExclusive(String name, Duration lockAtMostFor, Duration lockAtLeastFor, Runnable task) {
+        if (!tryAcquire(name, lockAtMostFor)) {
+            log.debug("Lease '{}' held by another instance; skipping.", name);
+            return false;
+        }
+        try {
+            task.run();
+        } finally {
+            try {
+                release(name, lockAtLeastFor);
+            } catch (Exception ex) {
+                // lease simply expires at lockAtMostFor
+                log.warn("Failed to release lease '{}': {}", name, ex.toString());
+            }
+        }
+        return true;
+    }
+
+    private void ensureRowExists(String name) {
+        if (repo.existsById(name)) return;
+        try {
+            // free since the epoch: "now" would be rounded to the column's microseconds, possibly upwards,
+            // and then "locked_until <= now" fails for this very first acquisition
+            repo.saveAndFlush(new SchedulerLock(name, Instant.EPOCH));
+        } catch (DataIntegrityViolationException ex) {
+            // another node inserted it first; fine
+        }
+    }
+
+    private static String defaultInstanceId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception ex) {
+            host = "unknown-host";
+        }
+        return host + ":" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.smartspendapp.service;
+
+import com.example.smartspendapp.config.AppUserPrincipal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Short-lived cache of the UserDetails built for form logins and remember-me cookies, so a burst
+ * of logins does not run the users + roles query for every request.
+ *
+ * Entries expire after app.security.user-cache.ttl-ms and the cache holds at most
+ * app.security.user-cache.max-entries users (new users are simply not cached when it is full).
+ * Copies go in and copies come out: the ProviderManager erases the password of the principal it
+ * returns, which must not be the cached instance. Code that changes a user's password, enabled
+ * flag or roles calls {@link #evict(String)}; the TTL bounds how long other nodes can be stale.
+ */
+@Component
+public class TtlUserCache implements UserCache {
+
+    private final Logger log = LoggerFactory.getLogger(TtlUserCache.class);
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final long ttlMs;
+    private final int maxEntries;
+
+    public TtlUserCache(@Value("${app.security.user-cache.ttl-ms:60000}") long ttlMs,
+                        @Value("${app.security.user-cache.max-entries:10000}") int maxEntries) {
+        this.ttlMs = ttlMs;
+        this.maxEntries = maxEntries;
+    }
+
+    @Override
+    public UserDetails getUserFromCache(String username) {
+        Entry entry = username == null ? null : entries.get(username);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt <= System.currentTimeMillis()) {
+            entries.remove(username, entry);
+            return null;
+        }
+        return copy(entry.user);
+    }
+
+    @Override
+    public void putUserInCache(UserDetails user) {
+        if (ttlMs <= 0 || user == null || user.getUsername() == null || user.getPassword() == null) {
+            return;
+        }
+        if (entries.size() >= maxEntries && !entries.containsKey(user.getUsername())) {
+            sweep();
+            if (entries.size() >= maxEntries) return;
+        }
+        entries.put(user.getUsername(), new Entry(copy(user), System.currentTimeMillis() + ttlMs));
+    }
+
+    @Override
+    public void removeUserFromCache(String username) {
+        if (username != null) {
+            entries.remove(username);
+        }
+    }
+
+    /**
+     * Drops the cached details of {@code email} now and, when called inside a transaction, once more
+     * after it commits, so a login racing the update cannot put the old row back for a whole TTL.
+     */
+    public void evict(String email) {
+        removeUserFromCache(email);
+        if (email != null && TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    removeUserFromCache(email);
+                }
+            });
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    @Scheduled(fixedDelayString = "${app.security.user-cache.sweep-ms:60000}")
+    void sweep() {
+        long now = System.currentTimeMillis();
+        int before = entries.size();
+        entries.values().removeIf(e -> e.expiresAt <= now);
+        if (before > 0) {
+            log.debug("User cache sweep: {} -> {} entries", before, entries.size());
+        }
+    }
+
+    private static UserDetails copy(UserDetails user) {
+        if (user instanceof AppUserPrincipal p) {
+            return p.copy();
+        }
+        return User.withUserDetails(user).build();
+    }
+
+    private static final class Entry {
+        final UserDetails user;
+        final long expiresAt;
+
+        Entry(UserDetails user, long expiresAt) {
+            this.user = user;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
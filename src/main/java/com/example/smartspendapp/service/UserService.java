@@ -65,6 +65,13 @@ public class UserService {
         return userRepository.findByEmail(email).orElse(null);
     }
 
+    /**
+     * Reference to the user with this id, for setting an owner without loading the row.
+     */
+    public User getReference(Long id) {
+        return userRepository.getReferenceById(id);
+    }
+
     /**
      * Optional: helper to create a user programmatically (if needed).
      */
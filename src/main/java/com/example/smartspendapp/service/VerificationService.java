@@ -5,8 +5,6 @@ import com.example.smartspendapp.model.VerificationToken;
 import com.example.smartspendapp.repository.UserRepository;
 import com.example.smartspendapp.repository.VerificationTokenRepository;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
@@ -25,7 +23,10 @@ public class VerificationService {
     private UserRepository userRepo;
 
     @Autowired
-    private JavaMailSender mailSender;
+    private EmailService emailService;
+
+    @Autowired
+    private TtlUserCache userCache;
 
     // ===============================================
     // 🔹 1. Create Email Verification Link
@@ -59,25 +60,14 @@ public class VerificationService {
     private void sendVerificationEmail(String toEmail, String token) {
         String verifyUrl = "http://localhost:8080/api/auth/verify?token=" + token;
 
-        SimpleMailMessage message = new SimpleMailMessage();
-        message.setTo(toEmail);
-        message.setSubject("SmartSpend Email Verification");
-        message.setText("Hello,\n\nPlease verify your SmartSpend account by clicking the link below:\n\n"
-                + verifyUrl + "\n\nThis link will expire in 15 minutes.");
-
-        mailSender.send(message);
+        emailService.sendVerificationEmail(toEmail, verifyUrl);
     }
 
     // ===============================================
     // 🔹 3. Send OTP Email
     // ===============================================
     private void sendOtpEmail(String toEmail, String otp) {
-        SimpleMailMessage message = new SimpleMailMessage();
-        message.setTo(toEmail);
-        message.setSubject("Your SmartSpend OTP");
-        message.setText("Your SmartSpend verification OTP is: " + otp +
-                "\n\nThis OTP will expire in 15 minutes.");
-        mailSender.send(message);
+        emailService.sendOtpEmail(toEmail, otp);
     }
 
     // ===============================================
@@ -97,6 +87,7 @@ public class VerificationService {
         User user = vt.getUser();
         user.setEnabled(true);
         userRepo.save(user);
+        userCache.evict(user.getEmail());
         tokenRepo.delete(vt);
 
         return true;
@@ -122,6 +113,7 @@ public class VerificationService {
 
         user.setEnabled(true);
         userRepo.save(user);
+        userCache.evict(user.getEmail());
         tokenRepo.delete(token);
 
         return true;
@@ -6,7 +6,12 @@ import com.example.smartspendapp.model.VerificationToken;
 import com.example.smartspendapp.repository.RoleRepository;
 import com.example.smartspendapp.repository.UserRepository;
 import com.example.smartspendapp.repository.VerificationTokenRepository;
+import com.example.smartspendapp.service.ApiTokenService;
+import com.example.smartspendapp.service.ClientIpResolver;
+import com.example.smartspendapp.service.EmailSendLimiter;
 import com.example.smartspendapp.service.EmailService;
+import com.example.smartspendapp.service.PasswordHashingBusyException;
+import com.example.smartspendapp.service.TtlUserCache;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import org.junit.jupiter.api.*;
@@ -41,6 +46,12 @@ class ApiAuthControllerTest {
     @Mock private org.springframework.security.crypto.password.PasswordEncoder passwordEncoder;
     @Mock private AuthenticationManager authenticationManager;
     @Mock private EmailService emailService;
+    // unstubbed check() returns 0 = allowed
+    @Mock private EmailSendLimiter sendLimiter;
+    @Mock private ClientIpResolver clientIp;
+    @Mock private TtlUserCache userCache;
+    // unstubbed isEnabled() returns false = session mode
+    @Mock private ApiTokenService tokenService;
 
     @InjectMocks
     private ApiAuthController controller;
@@ -158,6 +169,8 @@ class ApiAuthControllerTest {
         ArgumentCaptor<User> userCaptor = ArgumentCaptor.forClass(User.class);
         verify(userRepository).save(userCaptor.capture());
         Assertions.assertTrue(Boolean.TRUE.equals(userCaptor.getValue().getEnabled()));
+        // cached (disabled) login details must not outlive the verification
+        verify(userCache).evict(email);
 
         ArgumentCaptor<VerificationToken> tokenCaptor = ArgumentCaptor.forClass(VerificationToken.class);
         verify(verificationTokenRepository).save(tokenCaptor.capture());
@@ -222,6 +235,23 @@ class ApiAuthControllerTest {
         verify(emailService, never()).sendOtpEmail(anyString(), anyString());
     }
 
+    @Test
+    void resendOtp_rateLimited_returnsTooManyRequests() throws Exception {
+        String email = "flood@example.com";
+        when(clientIp.resolve(any())).thenReturn("203.0.113.7");
+        when(sendLimiter.check(email, "203.0.113.7")).thenReturn(120L);
+
+        mockMvc.perform(post("/api/auth/resend-otp")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(Map.of("email", email))))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "120"))
+                .andExpect(jsonPath("$.error").exists());
+
+        verify(verificationTokenRepository, never()).save(any());
+        verify(emailService, never()).sendOtpEmail(anyString(), anyString());
+    }
+
     // ---------- LOGIN ----------
 
     @Test
@@ -247,6 +277,63 @@ class ApiAuthControllerTest {
                 .andExpect(jsonPath("$.email").value(email));
     }
 
+    @Test
+    void login_tokenMode_returnsTokensWithoutSession() throws Exception {
+        String email = "token@example.com";
+        Authentication auth = new UsernamePasswordAuthenticationToken(email, null,
+                List.of(new SimpleGrantedAuthority("ROLE_USER")));
+        when(authenticationManager.authenticate(any(Authentication.class))).thenReturn(auth);
+
+        User user = new User(); user.setId(7L); user.setEmail(email); user.setUsername("tok");
+        user.setPassword("{bcrypt}hash"); user.setEnabled(true);
+        when(userRepository.findByEmail(email)).thenReturn(Optional.of(user));
+
+        ApiTokenService real = new ApiTokenService(null, "token", "0123456789abcdef0123456789abcdef", 900, 3600);
+        ApiTokenService.Tokens tokens = real.issue(7L, email, "{bcrypt}hash", auth.getAuthorities());
+        when(tokenService.isEnabled()).thenReturn(true);
+        when(tokenService.issue(eq(7L), eq(email), eq("{bcrypt}hash"), any())).thenReturn(tokens);
+
+        Map<String,String> body = Map.of("email", email, "password", "pwd");
+
+        mockMvc.perform(post("/api/auth/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(body)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accessToken").value(tokens.getAccessToken()))
+                .andExpect(jsonPath("$.refreshToken").value(tokens.getRefreshToken()))
+                .andExpect(jsonPath("$.tokenType").value("Bearer"))
+                .andExpect(jsonPath("$.expiresIn").value(900))
+                .andExpect(result -> Assertions.assertNull(result.getRequest().getSession(false)));
+
+        // the access token carries the id and roles, and a tampered one is rejected
+        var principal = real.verifyAccess(tokens.getAccessToken()).orElseThrow();
+        Assertions.assertEquals(7L, principal.getUserId());
+        Assertions.assertEquals(email, principal.getUsername());
+        Assertions.assertTrue(principal.getAuthorities().contains(new SimpleGrantedAuthority("ROLE_USER")));
+        Assertions.assertTrue(real.verifyAccess(tokens.getAccessToken() + "x").isEmpty());
+        Assertions.assertTrue(real.verifyAccess(tokens.getRefreshToken()).isEmpty());
+    }
+
+    @Test
+    void refresh_invalidToken_returnsUnauthorized() throws Exception {
+        when(tokenService.isEnabled()).thenReturn(true);
+        when(tokenService.refresh("bad")).thenReturn(Optional.empty());
+
+        mockMvc.perform(post("/api/auth/refresh")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(Map.of("refreshToken", "bad"))))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void refresh_sessionMode_returnsNotFound() throws Exception {
+        mockMvc.perform(post("/api/auth/refresh")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(Map.of("refreshToken", "x"))))
+                .andExpect(status().isNotFound());
+        verify(tokenService, never()).refresh(anyString());
+    }
+
     @Test
     void login_disabled_throwsDisabledException_returnsForbidden() throws Exception {
         when(authenticationManager.authenticate(any(Authentication.class)))
@@ -274,4 +361,18 @@ class ApiAuthControllerTest {
                 .andExpect(status().isUnauthorized())
                 .andExpect(jsonPath("$.error").value("Invalid credentials"));
     }
+
+    @Test
+    void login_hashingBusy_returnsServiceUnavailable() throws Exception {
+        when(authenticationManager.authenticate(any(Authentication.class)))
+                .thenThrow(new PasswordHashingBusyException("queue full"));
+
+        Map<String,String> body = Map.of("email", "c@example.com", "password", "x");
+
+        mockMvc.perform(post("/api/auth/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(body)))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().exists("Retry-After"));
+    }
 }
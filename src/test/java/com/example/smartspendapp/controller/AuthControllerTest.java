@@ -2,6 +2,8 @@ package com.example.smartspendapp.controller;
 
 import com.example.smartspendapp.model.User;
 import com.example.smartspendapp.repository.UserRepository;
+import com.example.smartspendapp.service.ClientIpResolver;
+import com.example.smartspendapp.service.EmailSendLimiter;
 import com.example.smartspendapp.service.PasswordResetService;
 import com.example.smartspendapp.service.VerificationService;
 import org.junit.jupiter.api.DisplayName;
@@ -44,6 +46,12 @@ class AuthControllerTest {
     @MockBean
     private PasswordEncoder passwordEncoder;
 
+    @MockBean
+    private EmailSendLimiter sendLimiter;
+
+    @MockBean
+    private ClientIpResolver clientIp;
+
     @Test
     @DisplayName("POST /resend-verification -> 400 when email missing")
     void resendVerification_missingEmail_returnsBadRequest() throws Exception {
@@ -20,6 +20,7 @@ import java.util.Arrays;
 import java.util.Optional;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.*;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -175,4 +176,24 @@ class BudgetControllerTest {
         verify(userRepository).findByEmail(email);
         verify(budgetService).saveBudget(any(Budget.class));
     }
+
+    @Test
+    @DisplayName("PUT /api/budgets/digest -> 200 stores the digest opt-in")
+    void setDigest_enables_savesUser() throws Exception {
+        String email = "digest@example.com";
+        User user = new User();
+        user.setId(7L);
+        user.setEmail(email);
+
+        when(userRepository.findByEmail(email)).thenReturn(Optional.of(user));
+
+        mockMvc.perform(put(BASE + "/digest")
+                        .with(user(email).password("ignored").roles("USER"))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"enabled\": true}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.enabled").value(true));
+
+        verify(userRepository).save(argThat(u -> Boolean.TRUE.equals(u.getBudgetDigest())));
+    }
 }
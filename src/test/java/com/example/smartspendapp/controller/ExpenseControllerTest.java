@@ -1,5 +1,6 @@
 package com.example.smartspendapp.controller;
 
+import com.example.smartspendapp.config.AppUserPrincipal;
 import com.example.smartspendapp.model.Expense;
 import com.example.smartspendapp.model.User;
 import com.example.smartspendapp.service.ExpenseService;
@@ -11,6 +12,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.time.LocalDate;
@@ -88,7 +90,7 @@ class ExpenseControllerTest {
         e3.setType("expense");
         e3.setDate(LocalDate.of(2025, 11, 9));
 
-        when(expenseService.findByUser(user)).thenReturn(List.of(e1, e2, e3));
+        when(expenseService.findByUserId(100L)).thenReturn(List.of(e1, e2, e3));
 
         // Request: category=taxi, minAmount=100, maxAmount=200, date range, sort=amount_desc
         String q = "?category=taxi&minAmount=100&maxAmount=200&from=2025-11-01&to=2025-11-30&sort=amount_desc";
@@ -105,7 +107,7 @@ class ExpenseControllerTest {
                 .andExpect(jsonPath("$[1].amount").value(120.0));
 
         verify(userService, times(1)).findByEmail(email);
-        verify(expenseService, times(1)).findByUser(user);
+        verify(expenseService, times(1)).findByUserId(100L);
     }
 
     @Test
@@ -117,7 +119,7 @@ class ExpenseControllerTest {
         user.setEmail(email);
 
         when(userService.findByEmail(email)).thenReturn(user);
-        when(expenseService.findByUser(user)).thenReturn(List.of());
+        when(expenseService.findByUserId(11L)).thenReturn(List.of());
 
         mockMvc.perform(get("/api/expenses?from=bad-date").with(user(email)))
                 .andExpect(status().isBadRequest())
@@ -150,7 +152,7 @@ class ExpenseControllerTest {
         ex2.setCategory("Transport");
         ex2.setDate(LocalDate.now());
 
-        when(expenseService.findByUser(user)).thenReturn(List.of(ex1, ex2));
+        when(expenseService.findByUserId(33L)).thenReturn(List.of(ex1, ex2));
 
         mockMvc.perform(get("/dashboard").with(user(email)))
                 .andExpect(status().isOk())
@@ -162,6 +164,29 @@ class ExpenseControllerTest {
                 .andExpect(model().attribute("name", "ViewUser"));
 
         verify(userService, times(1)).findByEmail(email);
-        verify(expenseService, times(1)).findByUser(user);
+        verify(expenseService, times(1)).findByUserId(33L);
+    }
+
+    @Test
+    @DisplayName("GET /dashboard -> id and name come from the login principal, no user lookup")
+    void dashboard_appUserPrincipal_skipsUserLookup() throws Exception {
+        AppUserPrincipal principal = new AppUserPrincipal(44L, "PrincipalUser", "principal@example.com", "hash",
+                true, List.of(new SimpleGrantedAuthority("ROLE_USER")));
+
+        Expense ex = new Expense();
+        ex.setAmount(50.0);
+        ex.setType("expense");
+        ex.setCategory("Food");
+        ex.setDate(LocalDate.now());
+        when(expenseService.findByUserId(44L)).thenReturn(List.of(ex));
+
+        mockMvc.perform(get("/dashboard").with(user(principal)))
+                .andExpect(status().isOk())
+                .andExpect(view().name("dashboard"))
+                .andExpect(model().attribute("name", "PrincipalUser"))
+                .andExpect(model().attribute("userId", 44L));
+
+        verify(expenseService, times(1)).findByUserId(44L);
+        verifyNoInteractions(userService);
     }
 }
@@ -1,28 +1,34 @@
 package com.example.smartspendapp.controller;
 
-import com.example.smartspendapp.model.Notification;
+import com.example.smartspendapp.dto.NotificationDto;
 import com.example.smartspendapp.model.User;
 import com.example.smartspendapp.repository.UserRepository;
 import com.example.smartspendapp.service.NotificationService;
+import com.example.smartspendapp.service.NotificationSseHub;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 /**
- * Unit tests for NotificationController that use reflection helpers so
- * tests compile regardless of exact Notification getter/setter names.
+ * Unit tests for NotificationController. The User fixture is built with
+ * reflection helpers so tests compile regardless of exact setter names.
  */
 @ExtendWith(MockitoExtension.class)
 class NotificationControllerTest {
@@ -33,6 +39,9 @@ class NotificationControllerTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private NotificationSseHub sseHub;
+
     @InjectMocks
     private NotificationController notificationController;
 
@@ -47,75 +56,206 @@ class NotificationControllerTest {
     @Test
     void list_returnsNotifications() {
         // Arrange
-        Notification n1 = makeNotification(1L, "First message", false);
-        Notification n2 = makeNotification(2L, "Second message", true);
+        NotificationDto n1 = makeNotification(1L, "First message", false);
+        NotificationDto n2 = makeNotification(2L, "Second message", true);
 
         when(userRepository.findByEmail(email)).thenReturn(Optional.of(testUser));
-        when(notificationService.getAll(testUser)).thenReturn(List.of(n1, n2));
+        when(notificationService.getPage(100L, null, null, 20)).thenReturn(List.of(n1, n2));
 
         UserDetails ud = mock(UserDetails.class);
         when(ud.getUsername()).thenReturn(email);
 
         // Act
-        List<Notification> result = notificationController.list(ud);
+        List<NotificationDto> result = notificationController.list(ud, null, null);
 
         // Assert basics
         assertNotNull(result, "Result should not be null");
         assertEquals(2, result.size(), "Should return two notifications");
 
-        // Read values with reflection helpers (works regardless of getter name)
-        assertEquals("First message", readMessage(result.get(0)));
-        assertEquals("Second message", readMessage(result.get(1)));
+        assertEquals("First message", result.get(0).getMessage());
+        assertEquals("Second message", result.get(1).getMessage());
 
-        assertFalse(readFlag(result.get(0)), "First notification should be unread");
-        assertTrue(readFlag(result.get(1)), "Second notification should be read");
+        assertFalse(result.get(0).isReadFlag(), "First notification should be unread");
+        assertTrue(result.get(1).isReadFlag(), "Second notification should be read");
 
         verify(userRepository, times(1)).findByEmail(email);
-        verify(notificationService, times(1)).getAll(testUser);
+        verify(notificationService, times(1)).getPage(100L, null, null, 20);
         verifyNoMoreInteractions(userRepository, notificationService);
     }
 
+    @Test
+    void list_withCursor_passesCursorAndCapsLimit() {
+        // Arrange
+        Instant createdAt = Instant.parse("2025-11-20T10:15:30Z");
+        NotificationDto n1 = makeNotification(7L, "Older message", true);
+
+        when(userRepository.findByEmail(email)).thenReturn(Optional.of(testUser));
+        when(notificationService.getPage(100L, createdAt, 8L, 100)).thenReturn(List.of(n1));
+
+        UserDetails ud = mock(UserDetails.class);
+        when(ud.getUsername()).thenReturn(email);
+
+        // Act
+        List<NotificationDto> result = notificationController.list(ud, "2025-11-20T10:15:30Z,8", 500);
+
+        // Assert
+        assertEquals(1, result.size());
+        assertEquals("Older message", result.get(0).getMessage());
+        verify(notificationService, times(1)).getPage(100L, createdAt, 8L, 100);
+    }
+
+    @Test
+    void list_withMalformedCursor_returnsBadRequest() {
+        // Arrange
+        when(userRepository.findByEmail(email)).thenReturn(Optional.of(testUser));
+
+        UserDetails ud = mock(UserDetails.class);
+        when(ud.getUsername()).thenReturn(email);
+
+        // Act & Assert
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> notificationController.list(ud, "not-a-cursor", null));
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+        verifyNoInteractions(notificationService);
+    }
+
+    @Test
+    void unreadCount_returnsCountFromService() {
+        // Arrange
+        when(userRepository.findByEmail(email)).thenReturn(Optional.of(testUser));
+        when(notificationService.countUnread(100L)).thenReturn(3L);
+
+        UserDetails ud = mock(UserDetails.class);
+        when(ud.getUsername()).thenReturn(email);
+
+        // Act
+        Map<String, Long> result = notificationController.unreadCount(ud);
+
+        // Assert
+        assertEquals(3L, result.get("count"));
+        verify(notificationService, times(1)).countUnread(100L);
+        verifyNoMoreInteractions(notificationService);
+    }
+
     @Test
     void unread_returnsUnreadNotifications() {
         // Arrange
-        Notification n1 = makeNotification(10L, "Unread 1", false);
-        Notification n2 = makeNotification(11L, "Unread 2", false);
+        NotificationDto n1 = makeNotification(10L, "Unread 1", false);
+        NotificationDto n2 = makeNotification(11L, "Unread 2", false);
 
         when(userRepository.findByEmail(email)).thenReturn(Optional.of(testUser));
-        when(notificationService.getUnread(testUser)).thenReturn(List.of(n1, n2));
+        when(notificationService.getUnread(100L)).thenReturn(List.of(n1, n2));
 
         UserDetails ud = mock(UserDetails.class);
         when(ud.getUsername()).thenReturn(email);
 
         // Act
-        List<Notification> result = notificationController.unread(ud);
+        List<NotificationDto> result = notificationController.unread(ud);
 
         // Assert
         assertNotNull(result);
         assertEquals(2, result.size());
-        assertFalse(readFlag(result.get(0)));
-        assertFalse(readFlag(result.get(1)));
-        assertEquals("Unread 1", readMessage(result.get(0)));
+        assertFalse(result.get(0).isReadFlag());
+        assertFalse(result.get(1).isReadFlag());
+        assertEquals("Unread 1", result.get(0).getMessage());
 
         verify(userRepository, times(1)).findByEmail(email);
-        verify(notificationService, times(1)).getUnread(testUser);
+        verify(notificationService, times(1)).getUnread(100L);
         verifyNoMoreInteractions(userRepository, notificationService);
     }
 
     @Test
-    void markRead_callsServiceWithId() {
+    void markRead_callsServiceWithUserAndId() {
         // Arrange
         Long idToMark = 42L;
+        when(userRepository.findByEmail(email)).thenReturn(Optional.of(testUser));
+
+        UserDetails ud = mock(UserDetails.class);
+        when(ud.getUsername()).thenReturn(email);
+
+        // Act
+        notificationController.markRead(ud, idToMark);
+
+        // Assert
+        verify(notificationService, times(1)).markRead(100L, email, List.of(idToMark));
+        verifyNoMoreInteractions(notificationService);
+    }
+
+    @Test
+    void markReadBatch_returnsUpdatedCount() {
+        // Arrange
+        List<Long> ids = List.of(1L, 2L, 3L);
+        when(userRepository.findByEmail(email)).thenReturn(Optional.of(testUser));
+        when(notificationService.markRead(100L, email, ids)).thenReturn(2);
+
+        UserDetails ud = mock(UserDetails.class);
+        when(ud.getUsername()).thenReturn(email);
+
+        // Act
+        Map<String, Integer> result = notificationController.markRead(ud, ids);
+
+        // Assert
+        assertEquals(2, result.get("updated"));
+        verify(notificationService, times(1)).markRead(100L, email, ids);
+        verifyNoMoreInteractions(notificationService);
+    }
+
+    @Test
+    void markAllRead_returnsUpdatedCount() {
+        // Arrange
+        when(userRepository.findByEmail(email)).thenReturn(Optional.of(testUser));
+        when(notificationService.markAllRead(100L, email)).thenReturn(5);
+
+        UserDetails ud = mock(UserDetails.class);
+        when(ud.getUsername()).thenReturn(email);
 
         // Act
-        notificationController.markRead(idToMark);
+        Map<String, Integer> result = notificationController.markAllRead(ud);
 
         // Assert
-        verify(notificationService, times(1)).markRead(idToMark);
+        assertEquals(5, result.get("updated"));
+        verify(notificationService, times(1)).markAllRead(100L, email);
         verifyNoMoreInteractions(notificationService);
+    }
+
+    @Test
+    void stream_withLastEventId_subscribesAndReplaysMissed() {
+        // Arrange
+        SseEmitter emitter = new SseEmitter();
+        List<Object> missed = List.of(Map.of("id", 43L));
+        when(sseHub.subscribe(email)).thenReturn(emitter);
+        when(notificationService.replaySince(email, 42L)).thenReturn(missed);
+
+        UserDetails ud = mock(UserDetails.class);
+        when(ud.getUsername()).thenReturn(email);
+
+        // Act
+        SseEmitter result = notificationController.stream(ud, "42");
+
+        // Assert
+        assertSame(emitter, result);
+        verify(sseHub, times(1)).replay(email, emitter, missed);
         verifyNoInteractions(userRepository);
     }
 
+    @Test
+    void stream_withoutLastEventId_onlySubscribes() {
+        // Arrange
+        SseEmitter emitter = new SseEmitter();
+        when(sseHub.subscribe(email)).thenReturn(emitter);
+
+        UserDetails ud = mock(UserDetails.class);
+        when(ud.getUsername()).thenReturn(email);
+
+        // Act
+        SseEmitter result = notificationController.stream(ud, null);
+
+        // Assert
+        assertSame(emitter, result);
+        verify(sseHub, never()).replay(any(), any(), any());
+        verifyNoInteractions(notificationService);
+    }
+
     // ----------------- Helpers -----------------
 
     /**
@@ -154,168 +294,7 @@ class NotificationControllerTest {
         }
     }
 
-    /**
-     * Create Notification and set id/message/read via setters or reflection fallback.
-     */
-    private Notification makeNotification(Long id, String message, boolean read) {
-        try {
-            Notification n = new Notification();
-
-            // id
-            try {
-                Method mid = Notification.class.getMethod("setId", Long.class);
-                mid.invoke(n, id);
-            } catch (NoSuchMethodException ignored) {
-                try {
-                    Field fid = Notification.class.getDeclaredField("id");
-                    fid.setAccessible(true);
-                    fid.set(n, id);
-                } catch (NoSuchFieldException ignored2) { }
-            }
-
-            // message (try setMessage / setMsg / field)
-            boolean setMessageDone = false;
-            String[] msgSetterNames = {"setMessage", "setMsg", "setText"};
-            for (String name : msgSetterNames) {
-                try {
-                    Method mm = Notification.class.getMethod(name, String.class);
-                    mm.invoke(n, message);
-                    setMessageDone = true;
-                    break;
-                } catch (NoSuchMethodException ignored) { }
-            }
-            if (!setMessageDone) {
-                // try direct field
-                String[] msgFields = {"message", "msg", "text"};
-                for (String f : msgFields) {
-                    try {
-                        Field field = Notification.class.getDeclaredField(f);
-                        field.setAccessible(true);
-                        field.set(n, message);
-                        setMessageDone = true;
-                        break;
-                    } catch (NoSuchFieldException ignored) { }
-                }
-            }
-
-            // read boolean (try setRead / setIsRead or field)
-            boolean setReadDone = false;
-            String[] readSetterNames = {"setRead", "setIsRead", "setReadFlag"};
-            for (String name : readSetterNames) {
-                try {
-                    Method mr = Notification.class.getMethod(name, boolean.class);
-                    mr.invoke(n, read);
-                    setReadDone = true;
-                    break;
-                } catch (NoSuchMethodException ignored) { }
-            }
-            if (!setReadDone) {
-                String[] readFields = {"read", "isRead", "readFlag"};
-                for (String f : readFields) {
-                    try {
-                        Field field = Notification.class.getDeclaredField(f);
-                        field.setAccessible(true);
-                        field.set(n, read);
-                        setReadDone = true;
-                        break;
-                    } catch (NoSuchFieldException ignored) { }
-                }
-            }
-
-            // if neither setter nor field present, still return object; read helpers will fail with clear message
-            return n;
-        } catch (Exception ex) {
-            throw new RuntimeException("Failed to create Notification in test", ex);
-        }
-    }
-
-    /**
-     * Read message text from Notification using reflection (tries getters then fields).
-     */
-    private String readMessage(Notification n) {
-        if (n == null) return null;
-
-        String[] tryNames = {"getMessage", "message", "getMsg", "getText"};
-        for (String name : tryNames) {
-            try {
-                // try getter
-                Method m = Notification.class.getMethod(name);
-                Object val = m.invoke(n);
-                if (val != null) return val.toString();
-            } catch (NoSuchMethodException ignored) {
-                // try field next
-                try {
-                    Field f = Notification.class.getDeclaredField(name);
-                    f.setAccessible(true);
-                    Object val = f.get(n);
-                    if (val != null) return val.toString();
-                } catch (NoSuchFieldException ignored2) {
-                    // continue
-                } catch (Exception ex) {
-                    throw new RuntimeException("Failed to read field " + name + " from Notification", ex);
-                }
-            } catch (Exception ex) {
-                throw new RuntimeException("Failed to call method " + name + " on Notification", ex);
-            }
-        }
-
-        // fallback: try any public method that returns String and looks like message
-        for (Method m : Notification.class.getMethods()) {
-            if (m.getReturnType().equals(String.class) && (m.getName().toLowerCase().contains("message") || m.getName().toLowerCase().contains("msg"))) {
-                try {
-                    Object val = m.invoke(n);
-                    if (val != null) return val.toString();
-                } catch (Exception ignored) { }
-            }
-        }
-
-        throw new IllegalStateException("Could not find message getter/field on Notification. " +
-                "Check your model for a string property that holds the notification message.");
-    }
-
-    /**
-     * Read boolean 'read' flag from Notification using reflection (tries getters then fields).
-     */
-    private boolean readFlag(Notification n) {
-        if (n == null) return false;
-
-        String[] tryNames = {"isRead", "getRead", "getIsRead", "isread", "getisRead"};
-        for (String name : tryNames) {
-            try {
-                Method m = Notification.class.getMethod(name);
-                Object val = m.invoke(n);
-                if (val instanceof Boolean) return (Boolean) val;
-            } catch (NoSuchMethodException ignored) {
-                try {
-                    Field f = Notification.class.getDeclaredField(name);
-                    f.setAccessible(true);
-                    Object val = f.get(n);
-                    if (val instanceof Boolean) return (Boolean) val;
-                } catch (NoSuchFieldException ignored2) {
-                    // continue
-                } catch (Exception ex) {
-                    throw new RuntimeException("Failed to read field " + name + " on Notification", ex);
-                }
-            } catch (Exception ex) {
-                throw new RuntimeException("Failed to call getter " + name + " on Notification", ex);
-            }
-        }
-
-        // try other common field names
-        String[] fieldNames = {"read", "readFlag", "is_read"};
-        for (String fn : fieldNames) {
-            try {
-                Field f = Notification.class.getDeclaredField(fn);
-                f.setAccessible(true);
-                Object val = f.get(n);
-                if (val instanceof Boolean) return (Boolean) val;
-            } catch (NoSuchFieldException ignored) {
-            } catch (Exception ex) {
-                throw new RuntimeException("Failed to read field " + fn + " on Notification", ex);
-            }
-        }
-
-        throw new IllegalStateException("Could not determine read flag on Notification. " +
-                "Add a getter (isRead/getRead) or a boolean field named 'read' for tests to read.");
+    private NotificationDto makeNotification(Long id, String message, boolean read) {
+        return new NotificationDto(id, "Title " + id, message, read, Instant.now());
     }
 }
@@ -0,0 +1,50 @@
+package com.example.smartspendapp.controller;
+
+import com.example.smartspendapp.service.NotificationService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.security.Principal;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class NotificationSocketControllerTest {
+
+    @Mock
+    private NotificationService notificationService;
+
+    @InjectMocks
+    private NotificationSocketController controller;
+
+    private final Principal principal = () -> "test@example.com";
+
+    @Test
+    void replay_withLastSeenId_returnsMissedNotifications() {
+        // Arrange
+        List<Object> missed = List.of(Map.of("id", 43L, "title", "Budget alert"));
+        when(notificationService.replaySince("test@example.com", 42L)).thenReturn(missed);
+
+        // Act
+        List<Object> result = controller.replay(principal, "42");
+
+        // Assert
+        assertEquals(missed, result);
+        verify(notificationService, times(1)).replaySince("test@example.com", 42L);
+    }
+
+    @Test
+    void replay_withoutOrInvalidHeader_returnsEmptyWithoutLookup() {
+        // Act & Assert
+        assertTrue(controller.replay(principal, null).isEmpty());
+        assertTrue(controller.replay(principal, "abc").isEmpty());
+        assertTrue(controller.replay(null, "42").isEmpty());
+        verifyNoInteractions(notificationService);
+    }
+}
@@ -58,7 +58,7 @@ class ReportControllerTest {
         List<Expense> rows = List.of(e1, e2);
 
         when(userRepository.findByEmail(email)).thenReturn(Optional.of(testUser));
-        when(expenseRepository.findByUserOrderByDateAsc(testUser)).thenReturn(rows);
+        when(expenseRepository.findByUserIdOrderByDateAsc(1L)).thenReturn(rows);
 
         // make reportService write bytes into the provided ByteArrayOutputStream
         doAnswer(invocation -> {
@@ -86,7 +86,7 @@ class ReportControllerTest {
                 .contains("filename=\"expenses-report.xlsx\"");
 
         verify(userRepository).findByEmail(email);
-        verify(expenseRepository).findByUserOrderByDateAsc(testUser);
+        verify(expenseRepository).findByUserIdOrderByDateAsc(1L);
         verify(reportService).generateExcelReport(eq(rows), any(ByteArrayOutputStream.class));
     }
 
@@ -100,7 +100,7 @@ class ReportControllerTest {
         List<Expense> rows = List.of(e);
 
         when(userRepository.findByEmail(email)).thenReturn(Optional.of(testUser));
-        when(expenseRepository.findByUserAndDateBetweenOrderByDateAsc(eq(testUser), eq(from), eq(to)))
+        when(expenseRepository.findByUserIdAndDateBetweenOrderByDateAsc(eq(1L), eq(from), eq(to)))
                 .thenReturn(rows);
 
         doAnswer(invocation -> {
@@ -124,7 +124,7 @@ class ReportControllerTest {
                 .contains("filename=\"expenses-report.xlsx\"");
 
         verify(userRepository).findByEmail(email);
-        verify(expenseRepository).findByUserAndDateBetweenOrderByDateAsc(testUser, from, to);
+        verify(expenseRepository).findByUserIdAndDateBetweenOrderByDateAsc(1L, from, to);
         verify(reportService).generateExcelReport(eq(rows), any(ByteArrayOutputStream.class));
     }
 
@@ -135,7 +135,7 @@ class ReportControllerTest {
         List<Expense> rows = List.of(e1);
 
         when(userRepository.findByEmail(email)).thenReturn(Optional.of(testUser));
-        when(expenseRepository.findByUserOrderByDateAsc(testUser)).thenReturn(rows);
+        when(expenseRepository.findByUserIdOrderByDateAsc(1L)).thenReturn(rows);
 
         doAnswer(invocation -> {
             ByteArrayOutputStream bos = (ByteArrayOutputStream) invocation.getArguments()[1];
@@ -158,7 +158,7 @@ class ReportControllerTest {
                 .contains("filename=\"expenses-report.pdf\"");
 
         verify(userRepository).findByEmail(email);
-        verify(expenseRepository).findByUserOrderByDateAsc(testUser);
+        verify(expenseRepository).findByUserIdOrderByDateAsc(1L);
         verify(reportService).generatePdfReport(eq(rows), any(ByteArrayOutputStream.class));
     }
 
@@ -177,7 +177,7 @@ class ReportControllerTest {
         // Arrange: service does nothing -> bytes empty -> controller should return 500
         List<Expense> rows = List.of();
         when(userRepository.findByEmail(email)).thenReturn(Optional.of(testUser));
-        when(expenseRepository.findByUserOrderByDateAsc(testUser)).thenReturn(rows);
+        when(expenseRepository.findByUserIdOrderByDateAsc(1L)).thenReturn(rows);
 
         // reportService.generatePdfReport will not write to stream (default mock does nothing)
 
@@ -191,7 +191,7 @@ class ReportControllerTest {
         assertThat(resp.getStatusCodeValue()).isEqualTo(500);
 
         verify(userRepository).findByEmail(email);
-        verify(expenseRepository).findByUserOrderByDateAsc(testUser);
+        verify(expenseRepository).findByUserIdOrderByDateAsc(1L);
         verify(reportService).generatePdfReport(eq(rows), any(ByteArrayOutputStream.class));
     }
 }
@@ -0,0 +1,128 @@
+package com.example.smartspendapp.scheduler;
+
+import com.example.smartspendapp.dto.BudgetAlertCandidate;
+import com.example.smartspendapp.model.BudgetAlertLevel;
+import com.example.smartspendapp.model.BudgetAlertState;
+import com.example.smartspendapp.model.Notification;
+import com.example.smartspendapp.repository.BudgetAlertStateRepository;
+import com.example.smartspendapp.repository.BudgetDigestEntryRepository;
+import com.example.smartspendapp.repository.BudgetRepository;
+import com.example.smartspendapp.repository.UserRepository;
+import com.example.smartspendapp.service.EmailService;
+import com.example.smartspendapp.service.NotificationService;
+import com.example.smartspendapp.service.PresenceRegistry;
+import com.example.smartspendapp.service.SchedulerLockService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Runs the alert sweep against mocked repositories. budget_alert_state is kept in a map so that a
+ * second run sees what the first one recorded.
+ */
+@ExtendWith(MockitoExtension.class)
+class BudgetAlertSchedulerTest {
+
+    @Mock private BudgetRepository budgetRepository;
+    @Mock private BudgetAlertStateRepository alertStateRepository;
+    @Mock private BudgetDigestEntryRepository digestRepository;
+    @Mock private UserRepository userRepository;
+    @Mock private NotificationService notificationService;
+    @Mock private EmailService emailService;
+    @Mock private SchedulerLockService lockService;
+    @Mock private PresenceRegistry presence;
+
+    private final Map<Long, BudgetAlertState> stored = new HashMap<>();
+    private BudgetAlertScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        // one slice and one shard: every run sweeps every budget
+        scheduler = new BudgetAlertScheduler(budgetRepository, alertStateRepository, digestRepository, userRepository,
+                notificationService, emailService, lockService, presence, 1, 1, 1);
+
+        BudgetAlertCandidate exceeded = new BudgetAlertCandidate(7L, 100L, "user@example.com", "Food",
+                LocalDate.now().withDayOfMonth(1), new BigDecimal("1000"), new BigDecimal("1200"), false);
+        when(budgetRepository.findAlertCandidates(any(), any(), any(), anyInt(), anyInt(), any()))
+                .thenReturn(List.of(exceeded));
+        when(lockService.runExclusive(anyString(), any(), any(), any())).thenAnswer(inv -> {
+            inv.getArgument(3, Runnable.class).run();
+            return true;
+        });
+        when(alertStateRepository.findAllById(any())).thenAnswer(inv -> {
+            List<BudgetAlertState> found = new ArrayList<>();
+            for (Long id : inv.<Iterable<Long>>getArgument(0)) {
+                if (stored.containsKey(id)) found.add(stored.get(id));
+            }
+            return found;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    void emailFailure_levelStillRecorded_noDuplicateNotification() throws Exception {
+        when(alertStateRepository.save(any())).thenAnswer(inv -> {
+            BudgetAlertState state = inv.getArgument(0);
+            stored.put(state.getBudgetId(), state);
+            return state;
+        });
+        when(notificationService.createNotification(eq(100L), eq("user@example.com"), anyString(), anyString()))
+                .thenReturn(new Notification());
+        doThrow(new IllegalStateException("outbox unavailable"))
+                .when(emailService).sendBudgetAlert(anyString(), anyString(), anyDouble(), anyDouble(), anyBoolean());
+
+        BudgetAlertScheduler.RunStats first = runOnce();
+        assertEquals(1, first.getAlertsSent());
+        assertEquals(BudgetAlertLevel.EXCEEDED, stored.get(7L).getLevel());
+
+        BudgetAlertScheduler.RunStats second = runOnce();
+        assertEquals(0, second.getAlertsSent());
+
+        verify(notificationService, times(1)).createNotification(anyLong(), anyString(), anyString(), anyString());
+        verify(emailService, times(1)).sendBudgetAlert(anyString(), anyString(), anyDouble(), anyDouble(), anyBoolean());
+    }
+
+    @Test
+    void notificationFailure_levelNotRecorded_nextRunRetries() throws Exception {
+        when(notificationService.createNotification(anyLong(), anyString(), anyString(), anyString()))
+                .thenThrow(new IllegalStateException("db down"));
+
+        runOnce();
+        runOnce();
+
+        assertTrue(stored.isEmpty());
+        verify(alertStateRepository, never()).save(any());
+        verify(notificationService, times(2)).createNotification(anyLong(), anyString(), anyString(), anyString());
+        verifyNoInteractions(emailService);
+    }
+
+    // checkBudgets() publishes its stats asynchronously once all shards are done
+    private BudgetAlertScheduler.RunStats runOnce() throws InterruptedException {
+        BudgetAlertScheduler.RunStats before = scheduler.getLastRun();
+        scheduler.checkBudgets();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (scheduler.getLastRun() == before) {
+            assertTrue(System.currentTimeMillis() < deadline, "sweep did not finish");
+            Thread.sleep(10);
+        }
+        return scheduler.getLastRun();
+    }
+}
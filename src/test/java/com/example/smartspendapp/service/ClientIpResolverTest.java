@@ -0,0 +1,81 @@
+package com.example.smartspendapp.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClientIpResolverTest {
+
+    private final ClientIpResolver resolver = new ClientIpResolver(List.of("10.0.0.0/8", "::1"));
+
+    @Test
+    void directClient_usesConnectionAddress_ignoresHeader() {
+        MockHttpServletRequest request = request("198.51.100.4", "203.0.113.9");
+
+        assertEquals("198.51.100.4", resolver.resolve(request));
+    }
+
+    @Test
+    void trustedProxy_usesForwardedClient() {
+        MockHttpServletRequest request = request("10.1.2.3", "203.0.113.9");
+
+        assertEquals("203.0.113.9", resolver.resolve(request));
+    }
+
+    @Test
+    void proxyChain_skipsTrustedHops_ignoresSpoofedLeftEntries() {
+        // the client sent "1.1.1.1" itself; the load balancer appended the real address, then an internal hop
+        MockHttpServletRequest request = request("10.1.2.3", "1.1.1.1, 203.0.113.9, 10.9.9.9");
+
+        assertEquals("203.0.113.9", resolver.resolve(request));
+    }
+
+    @Test
+    void severalHeaders_areReadAsOneChain() {
+        MockHttpServletRequest request = request("10.1.2.3", "1.1.1.1");
+        request.addHeader("X-Forwarded-For", "203.0.113.9");
+
+        assertEquals("203.0.113.9", resolver.resolve(request));
+    }
+
+    @Test
+    void garbageInChain_stopsAtLastVouchedAddress() {
+        MockHttpServletRequest request = request("10.1.2.3", "203.0.113.9, not-an-ip, 10.9.9.9");
+
+        assertEquals("10.9.9.9", resolver.resolve(request));
+    }
+
+    @Test
+    void trustedProxyWithoutHeader_usesConnectionAddress() {
+        MockHttpServletRequest request = request("10.1.2.3", null);
+
+        assertEquals("10.1.2.3", resolver.resolve(request));
+    }
+
+    @Test
+    void ipv6LoopbackProxy_isTrusted() {
+        MockHttpServletRequest request = request("0:0:0:0:0:0:0:1", "2001:db8::5");
+
+        assertEquals("2001:db8::5", resolver.resolve(request));
+    }
+
+    @Test
+    void noTrustedProxies_alwaysUsesConnectionAddress() {
+        ClientIpResolver direct = new ClientIpResolver(List.of(""));
+        MockHttpServletRequest request = request("10.1.2.3", "203.0.113.9");
+
+        assertEquals("10.1.2.3", direct.resolve(request));
+    }
+
+    private static MockHttpServletRequest request(String remoteAddr, String forwardedFor) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr(remoteAddr);
+        if (forwardedFor != null) {
+            request.addHeader("X-Forwarded-For", forwardedFor);
+        }
+        return request;
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.smartspendapp.service;
+
+import com.example.smartspendapp.model.EmailOutbox;
+import com.example.smartspendapp.repository.EmailOutboxRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Renders the real mail templates and checks the queued outbox row.
+ */
+@ExtendWith(MockitoExtension.class)
+class EmailServiceTest {
+
+    @Mock
+    private EmailOutboxRepository outbox;
+
+    @Mock
+    private EmailOutboxDispatcher dispatcher;
+
+    private EmailService emailService;
+
+    @BeforeEach
+    void setUp() {
+        emailService = new EmailService(outbox, dispatcher, new MailTemplateService(true));
+    }
+
+    @Test
+    void budgetAlert_withCategory_namesIt() {
+        emailService.sendBudgetAlert("a@example.com", "Food", 950, 1000, false);
+
+        EmailOutbox row = captureQueued();
+        assertEquals("⚠️ Budget Nearing Limit: Food", row.getSubject());
+        assertTrue(row.getBody().contains("nearing your budget for Food"), row.getBody());
+        assertTrue(row.getHtmlBody().contains("Food"));
+    }
+
+    @Test
+    void budgetAlert_nullCategory_rendersAllCategories() {
+        emailService.sendBudgetAlert("a@example.com", null, 1200, 1000, true);
+
+        EmailOutbox row = captureQueued();
+        assertEquals("⚠️ Budget Exceeded: All categories", row.getSubject());
+        assertTrue(row.getBody().contains("exceeded your budget for All categories"), row.getBody());
+        assertTrue(row.getHtmlBody().contains("All categories"));
+        assertFalse(row.getBody().contains("null"), row.getBody());
+        verify(dispatcher).wakeUp();
+    }
+
+    private EmailOutbox captureQueued() {
+        ArgumentCaptor<EmailOutbox> captor = ArgumentCaptor.forClass(EmailOutbox.class);
+        verify(outbox).save(captor.capture());
+        return captor.getValue();
+    }
+}